@@ -67,6 +67,17 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         return heap[1];
     }
 
+    @Override
+    public T replaceMin(T item) {
+    	if (item == null) {
+    		throw new IllegalArgumentException();
+    	}
+    	T value = peekMin();
+    	this.heap[1] = item;
+    	percolateDown();
+    	return value;
+    }
+
     public void insert(T item) {
         if (item == null) {
         	throw new IllegalArgumentException();
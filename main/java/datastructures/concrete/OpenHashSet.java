@@ -0,0 +1,60 @@
+package datastructures.concrete;
+
+import datastructures.concrete.dictionaries.OpenHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set backed by an OpenHashDictionary.
+ *
+ * See ISet for more details on what each method is supposed to do.
+ */
+public class OpenHashSet<T> implements ISet<T> {
+    private IDictionary<T, Boolean> map;
+
+    public OpenHashSet() {
+        this.map = new OpenHashDictionary<>();
+    }
+
+    public void add(T item) {
+        this.map.put(item, true);
+    }
+
+    public void remove(T item) {
+        if (!this.contains(item)) {
+            throw new NoSuchElementException();
+        }
+        this.map.remove(item);
+    }
+
+    public boolean contains(T item) {
+        return this.map.containsKey(item);
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public Iterator<T> iterator() {
+        return new SetIterator<>(this.map.iterator());
+    }
+
+    private static class SetIterator<T> implements Iterator<T> {
+        private Iterator<KVPair<T, Boolean>> iter;
+
+        public SetIterator(Iterator<KVPair<T, Boolean>> iter) {
+            this.iter = iter;
+        }
+
+        public boolean hasNext() {
+            return this.iter.hasNext();
+        }
+
+        public T next() {
+            return this.iter.next().getKey();
+        }
+    }
+}
@@ -24,7 +24,6 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     // it using our private tests.
     private KVPair<K, V>[] pairs; // an array of KVPairs
     private int size; 		 	  // number of data in the array
-    private int indexSearch;      // marks the index for a key after confirming the key exists
     
     public static final int DEFAULT_CAPACITY = 10;
 
@@ -44,7 +43,6 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     		throw new IllegalArgumentException();
     	}
     	size = 0;
-    	indexSearch = 0;
     	pairs = this.makeArrayOfPairs(arraySize);
     	
     }
@@ -63,16 +61,18 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     }
 
     public V get(K key) {
-    	if (!this.containsKey(key)) {
+    	int index = pairIndex(key);
+    	if (index < 0) {
     		throw new NoSuchKeyException();
     	}
-    	return pairs[indexSearch].getValue();
+    	return pairs[index].getValue();
     }
     
     public void put(K key, V value) {
     	KVPair<K, V> newPair = new KVPair<K, V>(key, value);
-    	if (this.containsKey(key)) {
-    		pairs[indexSearch] = newPair; 
+    	int index = pairIndex(key);
+    	if (index >= 0) {
+    		pairs[index] = newPair; 
     	} else {
     		if (size == pairs.length) {
     			increaseCapacity(size + 1);
@@ -83,15 +83,17 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     }
 
     public V remove(K key) {
-        if (!this.containsKey(key)) {
+        int index = pairIndex(key);
+        if (index < 0) {
         	throw new NoSuchKeyException();
         }
-        int index = pairIndex(key);
         V value = pairs[index].getValue();
         for (int i = index; i < size - 1; i++) {
         	pairs[i] = pairs[i + 1];
         }
         size--;
+        // The iterator stops at the first null slot, so clear the one we vacated.
+        pairs[size] = null;
         return value; 
     }
 
@@ -108,21 +110,14 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     }
     
     /****************************************************************************************
-	* Returns the index of the key in the array
+	* Returns the index of the key in the array, or -1 if the key is not in the array
 	* @param key - the key of the wanted index
 	****************************************************************************************/
     private int pairIndex(K key) {
-    	for (int i = 0; i < this.size(); i++) {
-    		if (pairs[i].getKey() == null) {
-    			if (key == null) {
-    				indexSearch = i;
-    				return i;
-    			}
-    		} else {
-    			if (pairs[i].getKey() == key || pairs[i].getKey().equals(key)) {
-    				indexSearch = i;
-     				return i;
-     			}
+    	for (int i = 0; i < size; i++) {
+    		K pairKey = pairs[i].getKey();
+    		if (pairKey == key || (pairKey != null && pairKey.equals(key))) {
+    			return i;
     		}
     	}
     	return -1;
@@ -78,10 +78,11 @@ public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
     }
 
     public V get(K key) {
-        if (!containsKey(key)) {
+    	IDictionary<K, V> chain = chains[keyHashcodeToIndex(key)];
+        if (chain == null) {
         	throw new NoSuchKeyException("No such key: "+ key);
         }
-        return chains[keyHashcodeToIndex(key)].get(key);
+        return chain.get(key);
     }
 
     public void put(K key, V value) {
@@ -92,18 +93,22 @@ public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
     	if (chains[index] == null) {
     		chains[index] = new ArrayDictionary<K, V>();
     	}
-    	if (!containsKey(key)) {
-    		size++;
-    	}
-   		chains[index].put(key, value);
+    	// The chain only grows if the key is new, so we can tell whether to update
+    	// our size without searching the chain a second time.
+    	IDictionary<K, V> chain = chains[index];
+    	int oldChainSize = chain.size();
+   		chain.put(key, value);
+   		size += chain.size() - oldChainSize;
    	}
     
     public V remove(K key) {
-    	if (!containsKey(key)) {
+    	IDictionary<K, V> chain = chains[keyHashcodeToIndex(key)];
+    	if (chain == null) {
         	throw new NoSuchKeyException();
         }
+    	V value = chain.remove(key);
     	size--;
-    	return chains[keyHashcodeToIndex(key)].remove(key);
+    	return value;
     }
 
     public boolean containsKey(K key) {
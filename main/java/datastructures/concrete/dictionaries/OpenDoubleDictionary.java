@@ -0,0 +1,101 @@
+package datastructures.concrete.dictionaries;
+
+import misc.exceptions.NoSuchKeyException;
+
+/**
+ * A dictionary mapping keys to double values, using open addressing with linear probing.
+ *
+ * Keys and values are stored in two parallel arrays, so unlike ChainedHashDictionary
+ * this class allocates no objects per entry. The getDouble, putDouble and addTo methods
+ * work on primitive doubles directly; the regular IDictionary methods are also supported
+ * but box and unbox their values. See OpenHashTable for how the table itself works.
+ */
+public class OpenDoubleDictionary<K> extends OpenHashTable<K, Double, double[]> {
+    public OpenDoubleDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a dictionary that can hold the given number of entries before resizing.
+     */
+    public OpenDoubleDictionary(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * Returns the value corresponding to the given key without boxing it.
+     *
+     * @throws NoSuchKeyException if the dictionary does not contain the given key.
+     */
+    public double getDouble(K key) {
+        return this.values[this.findExistingSlot(key)];
+    }
+
+    /**
+     * Returns the value corresponding to the given key, or the default value if the
+     * dictionary does not contain the key.
+     */
+    public double getDoubleOrDefault(K key, double defaultValue) {
+        int slot = this.findSlotIfPresent(key);
+        return slot >= 0 ? this.values[slot] : defaultValue;
+    }
+
+    /**
+     * Adds the key-value pair to the dictionary without boxing the value. If the key
+     * already exists in the dictionary, replace its value with the given one.
+     */
+    public void putDouble(K key, double value) {
+        // Inserting may resize the table, so find the slot before reading this.values.
+        int slot = this.findOrInsertSlot(key);
+        this.values[slot] = value;
+    }
+
+    /**
+     * Adds the given amount to the value corresponding to the given key, treating a
+     * missing key as having a value of zero. Returns the updated value.
+     */
+    public double addTo(K key, double amount) {
+        // Empty slots always hold zero (see clearValue), so a newly inserted key
+        // starts out at zero.
+        int slot = this.findOrInsertSlot(key);
+        this.values[slot] += amount;
+        return this.values[slot];
+    }
+
+    /**
+     * @throws IllegalArgumentException  if the value is null, since we can only store
+     *                                   actual doubles
+     */
+    @Override
+    public void put(K key, Double value) {
+        if (value == null) {
+            throw new IllegalArgumentException("OpenDoubleDictionary cannot store null values");
+        }
+        this.putDouble(key, value);
+    }
+
+    @Override
+    protected double[] newValues(int capacity) {
+        return new double[capacity];
+    }
+
+    @Override
+    protected void moveValue(double[] from, int fromSlot, double[] to, int toSlot) {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    protected void clearValue(int slot) {
+        this.values[slot] = 0.0;
+    }
+
+    @Override
+    protected Double getValue(double[] from, int slot) {
+        return from[slot];
+    }
+
+    @Override
+    protected void setValue(int slot, Double value) {
+        this.values[slot] = value;
+    }
+}
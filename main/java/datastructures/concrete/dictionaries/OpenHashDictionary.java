@@ -0,0 +1,62 @@
+package datastructures.concrete.dictionaries;
+
+/**
+ * A dictionary using open addressing with linear probing.
+ *
+ * Keys and values are stored in two parallel arrays, so unlike ChainedHashDictionary
+ * this class allocates no chains or KVPair objects per entry, and each operation
+ * probes the table only once. See OpenHashTable for how the table itself works.
+ */
+public class OpenHashDictionary<K, V> extends OpenHashTable<K, V, Object[]> {
+    public OpenHashDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a dictionary that can hold the given number of entries before resizing.
+     */
+    public OpenHashDictionary(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * Returns the value of the given key if the dictionary contains it, and otherwise
+     * stores the given value under the key and returns null. This probes the table
+     * once, where calling containsKey and then get or put would probe it twice.
+     */
+    public V putIfAbsent(K key, V value) {
+        int sizeBefore = this.size();
+        int slot = this.findOrInsertSlot(key);
+        if (this.size() != sizeBefore) {
+            this.setValue(slot, value);
+            return null;
+        }
+        return this.getValue(this.values, slot);
+    }
+
+    @Override
+    protected Object[] newValues(int capacity) {
+        return new Object[capacity];
+    }
+
+    @Override
+    protected void moveValue(Object[] from, int fromSlot, Object[] to, int toSlot) {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    protected void clearValue(int slot) {
+        this.values[slot] = null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected V getValue(Object[] from, int slot) {
+        return (V) from[slot];
+    }
+
+    @Override
+    protected void setValue(int slot, V value) {
+        this.values[slot] = value;
+    }
+}
@@ -0,0 +1,289 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The hash table behind OpenHashDictionary and OpenDoubleDictionary: open addressing
+ * with linear probing over an array of keys, plus a parallel array of values of type A.
+ *
+ * This class owns the keys and all of the probing, resizing and deletion logic.
+ * Subclasses only decide how values are stored: they create the values array, move
+ * a value from one slot to another, and convert a slot's value to and from V.
+ *
+ * Invariants:
+ *
+ * - The length of the arrays is always a power of two, so we can compute the slot
+ *   of a hashcode with a bitmask instead of a modulus.
+ * - A key is always stored in its home slot or in the run of occupied slots immediately
+ *   following it, so a lookup can stop at the first empty slot. We maintain this on
+ *   removal by shifting later entries of the run backwards into the gap.
+ */
+abstract class OpenHashTable<K, V, A> implements IDictionary<K, V> {
+    // Null marks an empty slot, so we store null keys as this object instead.
+    private static final Object NULL_KEY = new Object();
+
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final float LOAD_FACTOR = 0.5f;
+
+    private Object[] keys;
+    private int size;
+    private int resizeThreshold;
+
+    // The values, stored in the same slots as their keys.
+    protected A values;
+
+    /**
+     * Constructs a table that can hold the given number of entries before resizing.
+     */
+    protected OpenHashTable(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        int capacity = 2;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        this.allocate(capacity);
+        this.size = 0;
+    }
+
+    /**
+     * Returns a new, empty values array with the given number of slots.
+     */
+    protected abstract A newValues(int capacity);
+
+    /**
+     * Copies the value in the given slot of one values array to the given slot of another
+     * (possibly the same) values array.
+     */
+    protected abstract void moveValue(A from, int fromSlot, A to, int toSlot);
+
+    /**
+     * Forgets the value in the given slot, whose key has just been removed. Subclasses
+     * storing references should clear them so they can be garbage collected.
+     */
+    protected void clearValue(int slot) {
+        // Nothing to do for primitive values.
+    }
+
+    /**
+     * Returns the value in the given slot of the given values array.
+     */
+    protected abstract V getValue(A from, int slot);
+
+    /**
+     * Stores the given value in the given slot.
+     */
+    protected abstract void setValue(int slot, V value);
+
+    @Override
+    public V get(K key) {
+        return this.getValue(this.values, this.findExistingSlot(key));
+    }
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        int slot = this.findSlot(this.maskNull(key));
+        return this.isOccupied(slot) ? this.getValue(this.values, slot) : defaultValue;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        this.setValue(this.findOrInsertSlot(key), value);
+    }
+
+    @Override
+    public V remove(K key) {
+        int slot = this.findSlot(this.maskNull(key));
+        if (!this.isOccupied(slot)) {
+            throw new NoSuchKeyException();
+        }
+        V value = this.getValue(this.values, slot);
+        this.deleteSlot(slot);
+        this.size--;
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return this.isOccupied(this.findSlot(this.maskNull(key)));
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new OpenHashIterator();
+    }
+
+    /**
+     * Returns the slot containing the given key.
+     *
+     * @throws NoSuchKeyException if the table does not contain the given key.
+     */
+    protected int findExistingSlot(K key) {
+        int slot = this.findSlot(this.maskNull(key));
+        if (!this.isOccupied(slot)) {
+            throw new NoSuchKeyException("No such key: " + key);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot containing the given key, or -1 if the table does not contain it.
+     */
+    protected int findSlotIfPresent(K key) {
+        int slot = this.findSlot(this.maskNull(key));
+        return this.isOccupied(slot) ? slot : -1;
+    }
+
+    /**
+     * Returns the slot containing the given key, first inserting the key if the table
+     * does not contain it. A newly inserted key's slot holds whatever value a new
+     * values array or clearValue left there.
+     */
+    protected int findOrInsertSlot(K key) {
+        Object masked = this.maskNull(key);
+        int slot = this.findSlot(masked);
+        if (!this.isOccupied(slot)) {
+            slot = this.insert(masked, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns true if the given slot holds a key.
+     */
+    private boolean isOccupied(int slot) {
+        return this.keys[slot] != null;
+    }
+
+    /**
+     * Returns the slot containing the given (non-null) key, or the empty slot where
+     * the key would be inserted if the table does not contain it.
+     */
+    private int findSlot(Object key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.keys[slot] != null && !this.keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Stores the key in the given empty slot, resizing the arrays first if they are
+     * too full. Returns the slot the key ended up in.
+     */
+    private int insert(Object key, int slot) {
+        if (this.size >= this.resizeThreshold) {
+            this.resize();
+            slot = this.findSlot(key);
+        }
+        this.keys[slot] = key;
+        this.size++;
+        return slot;
+    }
+
+    /**
+     * Empties the given slot, then walks the rest of its run moving back any entry
+     * whose home slot comes at or before the gap, so every entry stays reachable from
+     * its home slot.
+     */
+    private void deleteSlot(int gap) {
+        int mask = this.keys.length - 1;
+        int slot = (gap + 1) & mask;
+        while (this.keys[slot] != null) {
+            int home = hash(this.keys[slot]) & mask;
+            // The entry may move into the gap only if its home slot does not lie
+            // (cyclically) between the gap and its current slot.
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                this.keys[gap] = this.keys[slot];
+                this.moveValue(this.values, slot, this.values, gap);
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[gap] = null;
+        this.clearValue(gap);
+    }
+
+    private void resize() {
+        Object[] oldKeys = this.keys;
+        A oldValues = this.values;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = this.findSlot(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.moveValue(oldValues, i, this.values, slot);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = this.newValues(capacity);
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private Object maskNull(K key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    /**
+     * Scrambles the key's hashcode before we use its low bits to pick a slot.
+     *
+     * Many hashcodes (Integer's, for example) are sequential, which would place keys
+     * in one long run of adjacent slots and make probing expensive. Multiplying by
+     * a large odd constant (derived from the golden ratio) scatters them, and folding
+     * in the high bits makes every bit of the hashcode affect the chosen slot.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Iterates over the slots of the table as it was when the iterator was created.
+     */
+    private class OpenHashIterator implements Iterator<KVPair<K, V>> {
+        private Object[] keys;
+        private A values;
+        private int position;
+
+        public OpenHashIterator() {
+            this.keys = OpenHashTable.this.keys;
+            this.values = OpenHashTable.this.values;
+            this.position = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.position < this.keys.length && this.keys[this.position] == null) {
+                this.position++;
+            }
+            return this.position < this.keys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public KVPair<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object key = this.keys[this.position];
+            KVPair<K, V> pair = new KVPair<>(key == NULL_KEY ? null : (K) key, getValue(this.values, this.position));
+            this.position++;
+            return pair;
+        }
+    }
+}
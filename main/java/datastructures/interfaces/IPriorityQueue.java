@@ -36,6 +36,25 @@ public interface IPriorityQueue<T extends Comparable<T>> {
      */
     void insert(T item);
 
+    /**
+     * Removes the smallest element in the queue, inserts the given item in its
+     * place, and returns the removed element.
+     *
+     * This does the same thing as calling removeMin and then insert, but lets
+     * implementations restore their ordering in a single pass.
+     *
+     * @throws EmptyContainerException  if the queue is empty
+     * @throws IllegalArgumentException  if the item is null
+     */
+    default T replaceMin(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        T min = this.removeMin();
+        this.insert(item);
+        return min;
+    }
+
     /**
      * Returns the number of elements contained within this queue.
      */
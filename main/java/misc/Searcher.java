@@ -38,23 +38,66 @@ public class Searcher {
         // - You should implement this method by using your ArrayHeap for the sake of
         //   efficiency.
     	
-    	if (k < 0) {
-    		throw new IllegalArgumentException();
-    	}
-    	
-    	IList<T> result = new DoubleLinkedList<>();
-    	IPriorityQueue<T> topKHeap = new ArrayHeap<T>();
-    	
+    	TopKCollector<T> collector = new TopKCollector<>(k);
     	for (T item : input) {
-           	topKHeap.insert(item);
-           	if (topKHeap.size() > k) {
-           		topKHeap.removeMin();
-           	}
-        }
-    	while (!topKHeap.isEmpty()) {
-    		result.add(topKHeap.removeMin());
-        }
-    	return result;
-    	
+    		collector.offer(item);
+    	}
+    	return collector.removeAllSorted();
+    }
+
+    /**
+     * Keeps track of the k largest items offered to it so far.
+     *
+     * Once k items are held, a new item is first compared against the smallest held
+     * item, so losing items cost a single comparison. A winning item replaces the
+     * smallest one in place instead of being inserted and then removed.
+     */
+    public static class TopKCollector<T extends Comparable<T>> {
+    	private IPriorityQueue<T> heap;
+    	private int k;
+
+    	/**
+    	 * @throws IllegalArgumentException  if k < 0
+    	 */
+    	public TopKCollector(int k) {
+    		if (k < 0) {
+    			throw new IllegalArgumentException();
+    		}
+    		this.heap = new ArrayHeap<T>();
+    		this.k = k;
+    	}
+
+    	/**
+    	 * Offers the given item to the collector, returning true if it is kept.
+    	 */
+    	public boolean offer(T item) {
+    		if (heap.size() < k) {
+    			heap.insert(item);
+    			return true;
+    		} else if (k > 0 && item.compareTo(heap.peekMin()) > 0) {
+    			heap.replaceMin(item);
+    			return true;
+    		}
+    		return false;
+    	}
+
+    	/**
+    	 * Returns the number of items currently kept.
+    	 */
+    	public int size() {
+    		return heap.size();
+    	}
+
+    	/**
+    	 * Removes every kept item from the collector and returns them in sorted
+    	 * order, smallest first.
+    	 */
+    	public IList<T> removeAllSorted() {
+    		IList<T> result = new DoubleLinkedList<>();
+    		while (!heap.isEmpty()) {
+    			result.add(heap.removeMin());
+    		}
+    		return result;
+    	}
     }
 }
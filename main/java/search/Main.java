@@ -1,10 +1,19 @@
 package search;
 
+import search.index.IndexReader;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class Main {
     // The dataset to index and search.
     // MUST be the name of one of the folders in the 'data' folder.
     public static final String DATA_FOLDER_NAME = "wikipedia-with-spam";
 
+    // The folder the finished index is saved to, so later runs can skip indexing.
+    // Delete the dataset's folder in here to re-index it after changing any pages.
+    public static final String INDEX_FOLDER_NAME = "index";
+
     // The name of your search engine (feel free to change this).
     public static final String SITE_TITLE = "Noodle";
 
@@ -14,8 +23,16 @@ public class Main {
     public static final int PORT = 8080;
 
     public static void main(String[] args) {
-        System.out.println("Indexing web pages...");
-        SearchEngine engine = new SearchEngine(DATA_FOLDER_NAME);
+        Path indexDirectory = Paths.get(INDEX_FOLDER_NAME, DATA_FOLDER_NAME);
+        SearchEngine engine;
+        if (IndexReader.exists(indexDirectory)) {
+            System.out.println("Opening saved index...");
+            engine = new SearchEngine(indexDirectory);
+        } else {
+            System.out.println("Indexing web pages...");
+            engine = new SearchEngine(DATA_FOLDER_NAME);
+            engine.writeIndex(indexDirectory);
+        }
 
         System.out.println("Setting up web server...");
         Webapp app = new Webapp(engine, SITE_TITLE, PORT);
@@ -1,16 +1,28 @@
 package search;
 
-import datastructures.concrete.ChainedHashSet;
 import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.OpenHashSet;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
-import misc.Searcher;
 import search.analyzers.PageRankAnalyzer;
 import search.analyzers.TfIdfAnalyzer;
+import search.index.DocumentDictionary;
+import search.index.IndexReader;
+import search.index.IndexWriter;
+import search.index.InvertedIndex;
+import search.index.PostingList;
+import search.index.PreparedQuery;
+import search.index.QueryTermCursor;
+import search.index.Segment;
+import search.index.SegmentedIndex;
+import search.index.SparseVector;
+import search.index.TieredMergePolicy;
+import search.index.TopKHeap;
 import search.misc.exceptions.DataExtractionException;
 import search.misc.Bridge;
 import search.models.Result;
 import search.models.Webpage;
+import search.models.WebpageCache;
 import search.models.WebpageSummary;
 
 import java.io.IOException;
@@ -18,44 +30,420 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class SearchEngine {
     public static double PAGE_RANK_DECAY = 0.85;
     public static double PAGE_RANK_EPSILON = 0.0001;
     public static int PAGE_RANK_ITERATION_LIMIT = 200;
+    public static PageRankAnalyzer.Solver PAGE_RANK_SOLVER = PageRankAnalyzer.Solver.PARALLEL_JACOBI;
+    public static EvaluationMode EVALUATION_MODE = EvaluationMode.PARALLEL;
+    public static int PAGE_LOADING_THREADS = Runtime.getRuntime().availableProcessors();
+    public static int MERGE_FACTOR = 10;
+    public static double MAX_DELETED_RATIO = 0.5;
+    public static double NORM_REFRESH_TOLERANCE = 0.05;
+    public static double PAGE_RANK_REFRESH_RATIO = 0.05;
 
-    private ISet<WebpageSummary> pages;
-    private TfIdfAnalyzer tfIdfAnalyzer;
-    private PageRankAnalyzer pageRankAnalyzer;
+    // Upper bounds used for pruning are computed in floating point, so we inflate them
+    // slightly to make sure rounding never lets them fall below a page's actual score.
+    private static final double WAND_BOUND_SLACK = 1.000001;
+
+    // Settings for splitting documents into shards in the PARALLEL evaluation mode.
+    private static final int SHARDS_PER_CORE = 4;
+    private static final int MIN_SHARD_SIZE = 4096;
+
+    // The number of postings evaluateExhaustive decodes at a time.
+    private static final int POSTINGS_CHUNK_SIZE = 128;
+
+    // The scratch space evaluateExhaustive scores pages in. Each thread keeps its own
+    // and reuses it for every query, so scoring never allocates or zeroes an array the
+    // size of the range being scored.
+    private static final ThreadLocal<ScoreAccumulator> ACCUMULATORS = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+    /**
+     * The strategies getTopKResults can use to find the best pages for a query.
+     */
+    public enum EvaluationMode {
+        // Score every page containing any query word.
+        EXHAUSTIVE,
+        // Skip pages whose best possible score cannot make it into the results.
+        WAND,
+        // Like WAND, but also skip whole blocks of postings using per-block bounds.
+        BLOCK_MAX_WAND,
+        // Like EXHAUSTIVE, but split the pages into shards scored on multiple cores.
+        PARALLEL
+    }
+
+    // The state of the index that queries read. It is replaced as a whole whenever
+    // it changes, so a query that reads it once sees a consistent set of segments,
+    // no matter what else happens while it runs. Changes are made while holding
+    // this engine's lock, so they never overwrite one another.
+    private volatile SegmentedIndex index;
+
+    // Whether a background maintenance pass is running, and its future, which
+    // awaitMerges waits for. Both are guarded by this engine's lock.
+    private boolean maintenanceRunning;
+    private boolean maintenanceRequested;
+    private CompletableFuture<Void> maintenance;
+
+    // The change count (see SegmentedIndex.getNumChanges) of the index when page ranks
+    // were last computed for every page. Guarded by this engine's lock.
+    private long pageRanksVersion;
 
     public SearchEngine(String dataFolderName) {
+        this(dataFolderName, null);
+    }
+
+    /**
+     * Indexes the webpages in the given data folder. If previousIndexDirectory holds an
+     * index saved with writeIndex for an earlier version of the same webpages, page
+     * ranks are updated from the saved ones rather than computed from scratch.
+     */
+    public SearchEngine(String dataFolderName, Path previousIndexDirectory) {
         long start = System.currentTimeMillis();
         ISet<Webpage> webpages = this.collectWebpages(Paths.get("data", dataFolderName));
         long end = System.currentTimeMillis() - start;
         System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
 
-        this.pages = this.extractWebpageSummaries(webpages);
+        DocumentDictionary documents = new DocumentDictionary(webpages);
+        WebpageSummary[] pages = new WebpageSummary[documents.size()];
+        URI[][] links = new URI[documents.size()][];
+        for (Webpage webpage : webpages) {
+            int document = documents.getId(webpage.getUri());
+            pages[document] = webpage.getSummary();
+            links[document] = Segment.toArray(webpage.getLinks(), documents);
+        }
         System.out.println("Done extracting");
 
         start = System.currentTimeMillis();
-        this.tfIdfAnalyzer = new TfIdfAnalyzer(webpages);
-        this.pageRankAnalyzer = new PageRankAnalyzer(
+        // The two analyzers only read the webpages and document IDs, so we compute
+        // page ranks in the background while building the TF-IDF vectors.
+        CompletableFuture<PageRankAnalyzer> pageRankFuture = CompletableFuture.supplyAsync(
+                () -> this.analyzePageRanks(webpages, documents, previousIndexDirectory));
+        // Queries only need the index and the page ranks, so we keep those and let the
+        // analyzers (with their TF-IDF vectors and link graph) be garbage-collected.
+        InvertedIndex index = new InvertedIndex(new TfIdfAnalyzer(webpages, documents));
+        PageRankAnalyzer pageRankAnalyzer = pageRankFuture.join();
+        double[] pageRanks = new double[documents.size()];
+        for (int document = 0; document < pageRanks.length; document++) {
+            pageRanks[document] = pageRankAnalyzer.computePageRank(document);
+        }
+        this.index = new SegmentedIndex(new Segment(index, pages, links, pageRanks));
+        end = System.currentTimeMillis() - start;
+        System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
+    }
+
+    private PageRankAnalyzer analyzePageRanks(ISet<Webpage> webpages, DocumentDictionary documents,
+                                              Path previousIndexDirectory) {
+        if (previousIndexDirectory != null && IndexReader.exists(previousIndexDirectory)) {
+            try {
+                IndexReader previous = new IndexReader(previousIndexDirectory);
+                return new PageRankAnalyzer(
+                        webpages,
+                        documents,
+                        previous.getIndex().getDocuments(),
+                        previous.getPageRanks(),
+                        PAGE_RANK_DECAY,
+                        PAGE_RANK_EPSILON,
+                        PAGE_RANK_ITERATION_LIMIT);
+            } catch (IOException ex) {
+                System.out.println("Could not read page ranks from " + previousIndexDirectory + ": " + ex.getMessage());
+            }
+        }
+        return new PageRankAnalyzer(
+                webpages,
+                documents,
+                PAGE_RANK_DECAY,
+                PAGE_RANK_EPSILON,
+                PAGE_RANK_ITERATION_LIMIT,
+                PAGE_RANK_SOLVER);
+    }
+
+    /**
+     * Opens an index previously saved with writeIndex, without having to load or
+     * analyze any webpages.
+     */
+    public SearchEngine(Path indexDirectory) {
+        long start = System.currentTimeMillis();
+        IndexReader reader;
+        try {
+            reader = new IndexReader(indexDirectory);
+        } catch (IOException ex) {
+            throw new DataExtractionException("Could not open index " + indexDirectory, ex);
+        }
+        this.index = new SegmentedIndex(new Segment(
+                reader.getIndex(), reader.getSummaries(), reader.getLinks(), reader.getPageRanks()));
+        long end = System.currentTimeMillis() - start;
+        System.out.println("Done opening index (" + (end / 1000.0) + " sec)");
+    }
+
+    /**
+     * Saves this engine's index to the given directory, so a later run can open it
+     * with the SearchEngine(Path) constructor instead of indexing every page again.
+     *
+     * Waits for any background maintenance to finish first, then writes all the
+     * segments merged into one, without the pages that have been removed, and with
+     * every norm and page rank up to date.
+     *
+     * The directory may be the one this engine was opened from: the new index is
+     * written alongside the files this engine is reading, never over them.
+     */
+    public void writeIndex(Path indexDirectory) {
+        this.awaitMerges();
+        SegmentedIndex current;
+        boolean pageRanksStale;
+        synchronized (this) {
+            current = this.index;
+            pageRanksStale = current.getNumChanges() != this.pageRanksVersion;
+        }
+        if (current.numSegments() != 1 || current.numLiveDocuments() != current.size()) {
+            current = current.withMerged(0, current.numSegments()).withRefreshedNorms();
+        }
+        if (pageRanksStale) {
+            current = this.refreshPageRanks(current);
+        }
+        Segment merged = current.getSegment(0);
+        try {
+            IndexWriter.write(indexDirectory, merged.getIndex(), merged.getPageRanks(),
+                    merged.getSummaries(), merged.getLinks());
+        } catch (IOException ex) {
+            throw new DataExtractionException("Could not write index " + indexDirectory, ex);
+        }
+    }
+
+    /**
+     * Adds a page that is not yet in the index.
+     *
+     * The page is indexed on its own as a new segment, so this takes time in
+     * proportion to the size of the page rather than of the index. The new page has
+     * a provisional page rank until background maintenance recomputes page ranks,
+     * which it does once PAGE_RANK_REFRESH_RATIO of the pages have changed. Likewise,
+     * the norms of the pages already indexed only reflect the new page once
+     * NORM_REFRESH_TOLERANCE of the pages have changed since they were computed.
+     *
+     * @throws IllegalArgumentException  if a page with the same URI is already indexed
+     */
+    public void addPage(Webpage webpage) {
+        Segment segment = this.buildSegment(webpage);
+        synchronized (this) {
+            if (this.index.findDocument(webpage.getUri()) >= 0) {
+                throw new IllegalArgumentException("Page is already indexed: " + webpage.getUri());
+            }
+            this.index = this.index.withSegment(segment);
+        }
+        this.scheduleMaintenance();
+    }
+
+    /**
+     * Replaces the indexed version of a page with the given one. See addPage.
+     *
+     * @throws IllegalArgumentException  if no page with the same URI is indexed
+     */
+    public void updatePage(Webpage webpage) {
+        Segment segment = this.buildSegment(webpage);
+        synchronized (this) {
+            int document = this.index.findDocument(webpage.getUri());
+            if (document < 0) {
+                throw new IllegalArgumentException("Page is not indexed: " + webpage.getUri());
+            }
+            this.index = this.index.withDeletion(document).withSegment(segment);
+        }
+        this.scheduleMaintenance();
+    }
+
+    /**
+     * Removes the page with the given URI from the index. It stops showing up in
+     * results right away, but (like every deleted page) still counts towards the
+     * IDF scores until its segment is merged.
+     *
+     * @throws IllegalArgumentException  if no page with the given URI is indexed
+     */
+    public void removePage(URI uri) {
+        synchronized (this) {
+            int document = this.index.findDocument(uri);
+            if (document < 0) {
+                throw new IllegalArgumentException("Page is not indexed: " + uri);
+            }
+            this.index = this.index.withDeletion(document);
+        }
+        this.scheduleMaintenance();
+    }
+
+    private Segment buildSegment(Webpage webpage) {
+        ISet<Webpage> webpages = new OpenHashSet<>();
+        webpages.add(webpage);
+        // Every page needs a positive page rank, so until the page ranks are refreshed
+        // the new page gets the average.
+        return Segment.build(webpages, 1.0 / (this.index.numLiveDocuments() + 1));
+    }
+
+    /**
+     * Waits until the background maintenance started by earlier changes to the index
+     * has finished.
+     */
+    public void awaitMerges() {
+        while (true) {
+            CompletableFuture<Void> running;
+            synchronized (this) {
+                if (!this.maintenanceRunning) {
+                    return;
+                }
+                running = this.maintenance;
+            }
+            running.join();
+        }
+    }
+
+    /**
+     * Makes sure a maintenance pass runs after the latest change to the index. If one
+     * is already running, it will go round again once it is done, so a burst of
+     * changes is handled by a single pass or two.
+     */
+    private synchronized void scheduleMaintenance() {
+        if (this.maintenanceRunning) {
+            this.maintenanceRequested = true;
+        } else {
+            this.maintenanceRunning = true;
+            this.maintenance = CompletableFuture.runAsync(this::runMaintenance);
+        }
+    }
+
+    private void runMaintenance() {
+        try {
+            while (true) {
+                SegmentedIndex before;
+                boolean refreshPageRanks;
+                synchronized (this) {
+                    before = this.index;
+                    refreshPageRanks = before.getNumChanges() - this.pageRanksVersion
+                            > PAGE_RANK_REFRESH_RATIO * before.numLiveDocuments();
+                }
+                SegmentedIndex after = this.maintain(before, refreshPageRanks);
+                synchronized (this) {
+                    // Pages may have been added while we worked, but if any segment we
+                    // started from was changed in the meantime, we have to start over.
+                    SegmentedIndex rebased = this.index.rebase(before, after);
+                    if (rebased != null) {
+                        this.index = rebased;
+                        if (refreshPageRanks) {
+                            this.pageRanksVersion = before.getNumChanges();
+                        }
+                        if (!this.maintenanceRequested) {
+                            this.maintenanceRunning = false;
+                            return;
+                        }
+                    }
+                    this.maintenanceRequested = false;
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Nobody looks at this task's future, so we report the failure here. The
+            // index is left as it was, and the next change starts a fresh pass.
+            synchronized (this) {
+                this.maintenanceRunning = false;
+                this.maintenanceRequested = false;
+            }
+            System.out.println("Index maintenance failed: " + ex);
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the given index after one maintenance pass: whatever merges the
+     * TieredMergePolicy asks for are made, and the norms of segments whose IDF scores
+     * have drifted by more than NORM_REFRESH_TOLERANCE are recomputed. If
+     * refreshPageRanks is true, every page's page rank is recomputed too.
+     *
+     * Each of these steps only replaces the segments it changes, so a pass that finds
+     * little to do costs little. The block upper bounds of any segment that lacks them
+     * are computed here too, so queries never have to wait for them.
+     */
+    private SegmentedIndex maintain(SegmentedIndex index, boolean refreshPageRanks) {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(MERGE_FACTOR, MAX_DELETED_RATIO);
+        int[] merge = mergePolicy.findMerge(index);
+        while (merge != null) {
+            index = index.withMerged(merge[0], merge[1]);
+            merge = mergePolicy.findMerge(index);
+        }
+        index = index.withRefreshedNorms(NORM_REFRESH_TOLERANCE);
+        if (refreshPageRanks) {
+            index = this.refreshPageRanks(index);
+        }
+        index.prepareBlockUpperBounds();
+        return index;
+    }
+
+    /**
+     * Returns the given index with every live page's page rank recomputed, starting
+     * from the page ranks they have now.
+     */
+    private SegmentedIndex refreshPageRanks(SegmentedIndex index) {
+        ISet<Webpage> webpages = new OpenHashSet<>();
+        DocumentDictionary documents = new DocumentDictionary();
+        double[] previousPageRanks = new double[index.numLiveDocuments()];
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            for (int document = 0; document < segment.size(); document++) {
+                if (!segment.isDeleted(document)) {
+                    Webpage webpage = segment.getLinkPage(document);
+                    webpages.add(webpage);
+                    previousPageRanks[documents.add(webpage.getUri())] = segment.getPageRank(document);
+                }
+            }
+        }
+        if (documents.size() == 0) {
+            return index;
+        }
+
+        // Pages the previous ranks know nothing about are treated as new pages, but
+        // every live page has a rank, so we can pass the same dictionary for both.
+        PageRankAnalyzer analyzer = new PageRankAnalyzer(
                 webpages,
+                documents,
+                documents,
+                previousPageRanks,
                 PAGE_RANK_DECAY,
                 PAGE_RANK_EPSILON,
                 PAGE_RANK_ITERATION_LIMIT);
-        end = System.currentTimeMillis() - start;
-        System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
+        int next = 0;
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            double[] pageRanks = segment.getPageRanks().clone();
+            for (int document = 0; document < segment.size(); document++) {
+                if (!segment.isDeleted(document)) {
+                    pageRanks[document] = analyzer.computePageRank(next);
+                    next++;
+                }
+            }
+            index = index.withSegmentReplaced(i, segment.withPageRanks(pageRanks));
+        }
+        return index;
     }
 
     public double computeScore(IList<String> query, URI uri) {
-        double tfIdf = this.tfIdfAnalyzer.computeRelevance(query, uri);
-        double pageRank = this.pageRankAnalyzer.computePageRank(uri);
+        SegmentedIndex current = this.index;
+        int document = current.findDocument(uri);
+        if (document < 0) {
+            throw new IllegalArgumentException("Page is not indexed: " + uri);
+        }
+        int i = current.findSegment(document);
+        double tfIdf = current.computeRelevance(current.prepareQuery(query), document);
+        return this.combineScores(current.getSegment(i), document - current.getBase(i), tfIdf);
+    }
+
+    private double combineScores(Segment segment, int document, double tfIdf) {
+        double pageRank = segment.getPageRank(document);
 
         if (pageRank <= 0.0) {
             throw new IllegalStateException(String.format(
                     "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
-                    uri, pageRank));
+                    segment.getSummary(document).getUri(), pageRank));
         }
 
         // We are combining these two scores in a fairly arbitrary way.
@@ -83,39 +471,445 @@ public class SearchEngine {
     }
 
     public IList<Result> getTopKResults(IList<String> query, int k) {
+        return this.getTopKResults(query, k, EVALUATION_MODE);
+    }
+
+    /**
+     * Returns the k highest scoring pages for the given query, best first, finding
+     * them with the given evaluation strategy. Every mode returns the same pages,
+     * apart from how ties at the k-th score are broken.
+     *
+     * Every segment of the index is searched, and the pages in the heaps are known by
+     * their global IDs, so the top k pages of each segment (or, in the PARALLEL mode,
+     * of each shard) can simply be merged into one heap at the end.
+     *
+     * @throws IllegalArgumentException  if k < 0
+     */
+    public IList<Result> getTopKResults(IList<String> query, int k, EvaluationMode mode) {
+        SegmentedIndex current = this.index;
+        TopKHeap topK = new TopKHeap(k);
+
+        PreparedQuery prepared = current.prepareQuery(query);
+        if (k > 0 && prepared.getMagnitude() != 0.0) {
+            if (mode == EvaluationMode.PARALLEL) {
+                topK = ForkJoinPool.commonPool().invoke(
+                        new ShardScorer(current, prepared, k, 0, current.size(), computeShardSize(current)));
+            } else if (mode == EvaluationMode.WAND || mode == EvaluationMode.BLOCK_MAX_WAND) {
+                topK = ForkJoinPool.commonPool().invoke(new SegmentScorer(
+                        current, prepared, k, mode == EvaluationMode.BLOCK_MAX_WAND, 0, current.numSegments()));
+            } else {
+                this.evaluateExhaustive(current, prepared, 0, current.size(), topK);
+            }
+        }
+
+        // We only build Result objects for the winners. The heap hands them back
+        // lowest score first, so inserting each at the front leaves the best first.
         IList<Result> results = new DoubleLinkedList<>();
+        while (!topK.isEmpty()) {
+            int document = topK.peekMinDocument();
+            int i = current.findSegment(document);
+            WebpageSummary page = current.getSegment(i).getSummary(document - current.getBase(i));
+            results.insert(0, new Result(page, topK.peekMinScore()));
+            topK.removeMin();
+        }
+        return results;
+    }
 
-        for (WebpageSummary summary: this.pages) {
-            double score = this.computeScore(query, summary.getUri());
-            results.add(new Result(summary, score));
+    /**
+     * Scores every page in the range [start, end) of global document IDs that
+     * contains at least one of the query's words, offering each one to the heap.
+     */
+    private void evaluateExhaustive(SegmentedIndex index, PreparedQuery query, int start, int end, TopKHeap topK) {
+        for (int i = 0; i < index.numSegments(); i++) {
+            int base = index.getBase(i);
+            Segment segment = index.getSegment(i);
+            int from = Math.max(start, base) - base;
+            int to = Math.min(end, base + segment.size()) - base;
+            if (from < to) {
+                this.evaluateExhaustive(segment, base, query, from, to, topK);
+            }
         }
+    }
 
-        IList<Result> topK = Searcher.topKSort(k, results);
+    /**
+     * Scores every live page in the range [start, end) of the segment's document IDs
+     * that contains at least one of the query's words, offering each one to the heap
+     * under its global ID (its ID plus the given base).
+     */
+    private void evaluateExhaustive(Segment segment, int base, PreparedQuery query, int start, int end,
+                                    TopKHeap topK) {
+        // Rather than scoring every page, we walk the posting list of each query word
+        // and accumulate the dot product for only those pages containing the word.
+        // Pages containing none of the (non-zero weighted) query words have a score
+        // of zero, so we never need to look at them.
+        InvertedIndex index = segment.getIndex();
+        SparseVector queryVector = query.getVector();
+        ScoreAccumulator accumulator = ACCUMULATORS.get();
+        accumulator.ensureCapacity(end - start);
+        double[] dotProducts = accumulator.dotProducts;
+        int[] documents = accumulator.documents;
+        double[] weights = accumulator.weights;
+
+        try {
+            for (int term = 0; term < queryVector.size(); term++) {
+                // The postings hold each word's TF, so the IDF score goes in here.
+                double queryWeight = queryVector.getWeight(term) * query.getIdfScore(term);
+                PostingList postings = index.getPostings(query.getTerm(term));
+                if (postings == null || queryWeight == 0.0) {
+                    continue;
+                }
+                // Decoding the postings a chunk at a time is much faster than one at a time.
+                int last = postings.advance(0, end);
+                for (int from = postings.advance(0, start); from < last; from += POSTINGS_CHUNK_SIZE) {
+                    int count = Math.min(POSTINGS_CHUNK_SIZE, last - from);
+                    postings.getDocuments(from, from + count, documents);
+                    postings.getWeights(from, from + count, weights);
+                    for (int i = 0; i < count; i++) {
+                        int document = documents[i];
+                        // All weights are positive, so a zero entry means we have not seen this page yet.
+                        if (dotProducts[document - start] == 0.0) {
+                            accumulator.addCandidate(document);
+                        }
+                        dotProducts[document - start] += queryWeight * weights[i];
+                    }
+                }
+            }
 
-        IList<Result> reversed = new DoubleLinkedList<>();
-        for (Result res : topK) {
-            reversed.insert(0, res);
+            for (int i = 0; i < accumulator.numCandidates; i++) {
+                int document = accumulator.candidates[i];
+                double norm = index.getDocumentNorm(document);
+                if (!segment.isDeleted(document) && norm > 0.0) {
+                    double tfIdf = dotProducts[document - start] / (query.getMagnitude() * norm);
+                    topK.offer(base + document, this.combineScores(segment, document, tfIdf));
+                }
+            }
+        } finally {
+            accumulator.clear(start);
+        }
+    }
+
+    /**
+     * Returns how many documents each ShardScorer should handle on its own. We aim for
+     * a few shards per core so that uneven shards still keep every core busy, but
+     * stop splitting once shards get small enough that forking costs more than it saves.
+     */
+    private static int computeShardSize(SegmentedIndex index) {
+        int numShards = ForkJoinPool.commonPool().getParallelism() * SHARDS_PER_CORE;
+        return Math.max(MIN_SHARD_SIZE, (index.size() + numShards - 1) / numShards);
+    }
+
+    /**
+     * Scratch space for evaluateExhaustive: the dot product of the query with every
+     * page in the range being scored, the pages whose dot products are non-zero, and
+     * buffers to decode postings into.
+     *
+     * Only the candidates' entries of dotProducts are ever set, so clearing just those
+     * leaves the whole array zeroed for the next range, however large it is. A range
+     * is always scored start to finish without forking or joining, so a thread never
+     * needs a second accumulator while its own is in use.
+     */
+    private static class ScoreAccumulator {
+        private double[] dotProducts = new double[0];
+        private int[] candidates = new int[16];
+        private int numCandidates = 0;
+        private int[] documents = new int[POSTINGS_CHUNK_SIZE];
+        private double[] weights = new double[POSTINGS_CHUNK_SIZE];
+
+        /**
+         * Makes sure dotProducts has room for a range of the given size.
+         */
+        public void ensureCapacity(int size) {
+            if (this.dotProducts.length < size) {
+                this.dotProducts = new double[Math.max(size, this.dotProducts.length * 2)];
+            }
+        }
+
+        public void addCandidate(int document) {
+            if (this.numCandidates == this.candidates.length) {
+                this.candidates = Arrays.copyOf(this.candidates, this.numCandidates * 2);
+            }
+            this.candidates[this.numCandidates] = document;
+            this.numCandidates++;
+        }
+
+        /**
+         * Zeroes the dot products of the candidates, given the first document of the
+         * range they were scored in, and forgets the candidates.
+         */
+        public void clear(int start) {
+            for (int i = 0; i < this.numCandidates; i++) {
+                this.dotProducts[this.candidates[i] - start] = 0.0;
+            }
+            this.numCandidates = 0;
+        }
+    }
+
+    /**
+     * Finds the top k pages within a range of global document IDs. Ranges larger than
+     * the shard size are split in half and scored in parallel, and the two halves'
+     * top k pages are then merged.
+     */
+    private class ShardScorer extends RecursiveTask<TopKHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private SegmentedIndex index;
+        private PreparedQuery query;
+        private int k;
+        private int start;
+        private int end;
+        private int shardSize;
+
+        public ShardScorer(SegmentedIndex index, PreparedQuery query, int k, int start, int end, int shardSize) {
+            this.index = index;
+            this.query = query;
+            this.k = k;
+            this.start = start;
+            this.end = end;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (this.end - this.start <= this.shardSize) {
+                TopKHeap topK = new TopKHeap(this.k);
+                evaluateExhaustive(this.index, this.query, this.start, this.end, topK);
+                return topK;
+            }
+            int middle = (this.start + this.end) >>> 1;
+            ShardScorer left = new ShardScorer(this.index, this.query, this.k, this.start, middle, this.shardSize);
+            ShardScorer right = new ShardScorer(this.index, this.query, this.k, middle, this.end, this.shardSize);
+            left.fork();
+            TopKHeap topK = right.compute();
+            topK.offerAll(left.join());
+            return topK;
+        }
+    }
+
+    /**
+     * Finds the top k pages within a range of segment positions using evaluateWand.
+     * Ranges of more than one segment are split in half and searched in parallel, and
+     * the two halves' top k pages are then merged. Segments whose pages have all been
+     * removed are skipped.
+     */
+    private class SegmentScorer extends RecursiveTask<TopKHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private SegmentedIndex index;
+        private PreparedQuery query;
+        private int k;
+        private boolean useBlockMax;
+        private int from;
+        private int to;
+
+        public SegmentScorer(SegmentedIndex index, PreparedQuery query, int k, boolean useBlockMax, int from, int to) {
+            this.index = index;
+            this.query = query;
+            this.k = k;
+            this.useBlockMax = useBlockMax;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (this.to - this.from <= 1) {
+                TopKHeap topK = new TopKHeap(this.k);
+                for (int i = this.from; i < this.to; i++) {
+                    Segment segment = this.index.getSegment(i);
+                    if (segment.numLiveDocuments() > 0) {
+                        evaluateWand(segment, this.index.getBase(i), this.query, topK, this.useBlockMax);
+                    }
+                }
+                return topK;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            SegmentScorer left = new SegmentScorer(this.index, this.query, this.k, this.useBlockMax, this.from, middle);
+            SegmentScorer right = new SegmentScorer(this.index, this.query, this.k, this.useBlockMax, middle, this.to);
+            left.fork();
+            TopKHeap topK = right.compute();
+            topK.offerAll(left.join());
+            return topK;
+        }
+    }
+
+    /**
+     * Finds the top pages of a segment using the WAND algorithm, which walks the
+     * query words' posting lists in parallel and skips pages that cannot beat the
+     * lowest score already in the heap. Pages are offered to the heap under their
+     * global IDs (their ID plus the given base), so the heaps of different
+     * segments can be merged afterwards.
+     *
+     * Each word gets an upper bound on what it can add to a page's score: the largest
+     * product of its weight in a page and that page's square-rooted page rank, divided
+     * by the page's norm. (Page ranks are so skewed that this is usually much less than
+     * the largest weight times the largest square-rooted page rank.) We keep the
+     * cursors sorted by their current page, and find the first cursor (the "pivot")
+     * at which the running total of upper bounds exceeds the heap's threshold. No page
+     * before the pivot's page can score high enough, so we jump the earlier cursors
+     * straight to it.
+     *
+     * If useBlockMax is true, we also keep a bound for every block of postings. Before
+     * scoring the pivot's page we add up the bounds of the blocks it would fall in,
+     * and if they cannot beat the threshold either, we skip past the end of the
+     * earliest of those blocks. This is what lets single-word queries skip anything.
+     */
+    private void evaluateWand(Segment segment, int base, PreparedQuery query, TopKHeap topK, boolean useBlockMax) {
+        InvertedIndex index = segment.getIndex();
+        SparseVector queryVector = query.getVector();
+        double boundScale = WAND_BOUND_SLACK / query.getMagnitude();
+
+        QueryTermCursor[] cursors = new QueryTermCursor[queryVector.size()];
+        int numCursors = 0;
+        for (int term = 0; term < queryVector.size(); term++) {
+            double queryWeight = queryVector.getWeight(term) * query.getIdfScore(term);
+            int termId = index.getTerms().getId(query.getTerm(term));
+            if (termId >= 0 && queryWeight != 0.0) {
+                cursors[numCursors] = new QueryTermCursor(
+                        index.getPostings(termId), queryWeight, segment.getBlockUpperBounds(termId), boundScale);
+                numCursors++;
+            }
+        }
+        sortCursors(cursors, numCursors);
+
+        while (true) {
+            // Until the heap is full every page gets in, so nothing can be skipped.
+            double threshold = topK.isFull() ? topK.peekMinScore() : 0.0;
+
+            int pivot = 0;
+            double bound = 0.0;
+            while (pivot < numCursors) {
+                bound += cursors[pivot].getUpperBound();
+                if (bound > threshold) {
+                    break;
+                }
+                pivot++;
+            }
+            if (pivot == numCursors) {
+                break;
+            }
+            int pivotDocument = cursors[pivot].getDocument();
+            if (pivotDocument == QueryTermCursor.NO_MORE_DOCUMENTS) {
+                break;
+            }
+            // Any later cursors on the same page belong with the pivot.
+            while (pivot + 1 < numCursors && cursors[pivot + 1].getDocument() == pivotDocument) {
+                pivot++;
+            }
+
+            if (useBlockMax) {
+                double blockBound = 0.0;
+                int nextDocument = pivot + 1 < numCursors
+                        ? cursors[pivot + 1].getDocument()
+                        : QueryTermCursor.NO_MORE_DOCUMENTS;
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[i].findBlock(pivotDocument);
+                    blockBound += cursors[i].getBlockUpperBound();
+                    int blockEnd = cursors[i].getBlockLastDocument();
+                    if (blockEnd < nextDocument - 1) {
+                        nextDocument = blockEnd + 1;
+                    }
+                }
+                if (blockBound <= threshold) {
+                    // Every page from the pivot's up to nextDocument lies in these same
+                    // blocks (or is missing from them), so none of them can beat the threshold.
+                    for (int i = 0; i <= pivot; i++) {
+                        cursors[i].advance(nextDocument);
+                    }
+                    sortCursors(cursors, numCursors);
+                    continue;
+                }
+            }
+
+            if (cursors[0].getDocument() == pivotDocument) {
+                double dotProduct = 0.0;
+                for (int i = 0; i <= pivot; i++) {
+                    dotProduct += cursors[i].getContribution();
+                    cursors[i].next();
+                }
+                double norm = index.getDocumentNorm(pivotDocument);
+                if (!segment.isDeleted(pivotDocument) && norm > 0.0) {
+                    double tfIdf = dotProduct / (query.getMagnitude() * norm);
+                    topK.offer(base + pivotDocument, this.combineScores(segment, pivotDocument, tfIdf));
+                }
+            } else {
+                for (int i = 0; i < pivot; i++) {
+                    cursors[i].advance(pivotDocument);
+                }
+            }
+            sortCursors(cursors, numCursors);
+        }
+    }
+
+    /**
+     * Sorts the cursors by their current page. There are only as many cursors as
+     * query words and they are nearly sorted already, so insertion sort is enough.
+     */
+    private static void sortCursors(QueryTermCursor[] cursors, int numCursors) {
+        for (int i = 1; i < numCursors; i++) {
+            QueryTermCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].getDocument() > cursor.getDocument()) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
         }
-        return reversed;
     }
 
     private ISet<Webpage> collectWebpages(Path root) {
+        Path[] paths;
         try {
-            return Files.walk(root)
+            paths = Files.walk(root)
             		.filter(Files::isReadable)
                     .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
-                    .map(Path::toUri)
-                    .map(Webpage::load)
-                    .collect(Bridge.toISet());
+                    .toArray(Path[]::new);
         } catch (IOException ex) {
             throw new DataExtractionException("Could not find given root folder", ex);
         }
-    }
 
-    private ISet<WebpageSummary> extractWebpageSummaries(ISet<Webpage> pages) {
-        ISet<WebpageSummary> output = new ChainedHashSet<>();
-        for (Webpage page : pages) {
-            output.add(page.getSummary());
+        // We only need to parse pages that are missing from the cache or have changed
+        // since it was written.
+        WebpageCache cache = WebpageCache.open(root);
+        String[] sources = new String[paths.length];
+        long[] lastModified = new long[paths.length];
+        Webpage[] webpages = new Webpage[paths.length];
+        AtomicInteger numParsed = new AtomicInteger(0);
+
+        // Parsing a page is expensive and every page is independent, so we load them in
+        // parallel, and each thread collects its pages into its own set, which Bridge
+        // merges in place. Running the stream inside our own pool caps how many threads
+        // we use. We also keep each page by position, since the cache is written in
+        // the same order as the paths.
+        ISet<Webpage> output;
+        ForkJoinPool pool = new ForkJoinPool(PAGE_LOADING_THREADS);
+        try {
+            output = pool.submit(() -> IntStream.range(0, paths.length)
+                    .parallel()
+                    .mapToObj(i -> {
+                        sources[i] = root.relativize(paths[i]).toString().replace('\\', '/');
+                        lastModified[i] = paths[i].toFile().lastModified();
+                        webpages[i] = cache.get(sources[i], lastModified[i]);
+                        if (webpages[i] == null) {
+                            webpages[i] = Webpage.loadOriginal(paths[i].toUri());
+                            numParsed.incrementAndGet();
+                        }
+                        return webpages[i];
+                    })
+                    .collect(Bridge.toISet())).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataExtractionException("Interrupted while loading webpages", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new DataExtractionException("Could not load webpages", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        if (numParsed.get() > 0 || cache.size() != paths.length) {
+            WebpageCache.write(root, sources, lastModified, webpages);
         }
         return output;
     }
@@ -6,14 +6,20 @@
 package search.analyzers;
 
 import datastructures.concrete.KVPair;
-import datastructures.concrete.dictionaries.ArrayDictionary;
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.OpenDoubleDictionary;
+import datastructures.concrete.dictionaries.OpenHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
+import search.index.DocumentDictionary;
+import search.index.PreparedQuery;
+import search.index.SparseVector;
+import search.index.TermDictionary;
 import search.models.Webpage;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * This class is responsible for computing how "relevant" any given document is
@@ -22,107 +28,221 @@ import java.net.URI;
  * See the spec for more details.
  */
 public class TfIdfAnalyzer {
+    // This field maps every single word in all the documents to its term ID.
+    private TermDictionary terms;
+
     // This field contains the IDF score for every single word in all
-    // the documents.
-    private IDictionary<String, Double> idfScores;
+    // the documents, indexed by term ID.
+    private double[] idfScores;
+
+    // This field maps each webpage you were given in the constructor to its
+    // document ID.
+    private DocumentDictionary documents;
+
+    // This field contains the term frequency (TF) vector for each webpage you
+    // were given in the constructor, indexed by document ID. Each vector is
+    // indexed by term ID. An InvertedIndex stores these rather than the TF-IDF
+    // vectors, so its postings stay valid when its IDF scores change.
+    private SparseVector[] documentTfVectors;
 
     // This field contains the TF-IDF vector for each webpage you were given
-    // in the constructor.
-    private IDictionary<URI, IDictionary<String, Double>> documentTfIdfVectors;
-    
-    // This field contains the Euclidean norm value of all TF-IDF vectors for 
-    // each webpage you were given in the constructor.
-    private IDictionary<URI, Double> documentTfIdfNormVectors;
+    // in the constructor, indexed by document ID. Each vector is indexed by
+    // term ID and also keeps track of its own Euclidean norm.
+    private SparseVector[] documentTfIdfVectors;
 
+    /**
+     * Computes the TF-IDF vectors of the given webpages, assigning each one a new
+     * document ID.
+     */
     public TfIdfAnalyzer(ISet<Webpage> webpages) {
-        this.idfScores = this.computeIdfScores(webpages);
-        this.documentTfIdfVectors = this.computeAllDocumentTfIdfVectors(webpages);
-        this.documentTfIdfNormVectors = this.computeDocumentNormVector();
+    	this(webpages, new DocumentDictionary(webpages));
+    }
+
+    /**
+     * Computes the TF-IDF vectors of the given webpages.
+     *
+     * Precondition: every webpage must have been added to the given document dictionary.
+     */
+    public TfIdfAnalyzer(ISet<Webpage> webpages, DocumentDictionary documents) {
+    	this.documents = documents;
+    	this.terms = new TermDictionary();
+
+    	// Step 1: Count the words in every page. Pages are independent of each other,
+    	// so we count them in parallel.
+    	WordCounts[] wordCounts = this.countAllWords(webpages);
+
+    	// Step 2: Give every word a term ID and count how many pages contain it. This
+    	// updates the shared term dictionary, so we do it on a single thread, going
+    	// through the pages in document ID order so the term IDs are deterministic.
+    	int[][] termIds = new int[wordCounts.length][];
+    	int[] documentFrequencies = this.assignTermIds(wordCounts, termIds);
+    	this.idfScores = this.computeIdfScores(documentFrequencies, webpages.size());
+
+    	// Step 3: Build the TF and TF-IDF vectors of every page, again in parallel.
+    	this.documentTfVectors = new SparseVector[wordCounts.length];
+    	this.documentTfIdfVectors = new SparseVector[wordCounts.length];
+    	this.computeAllDocumentVectors(wordCounts, termIds);
     }
 
     /**
      * Returns the TF-IDF vectors of all webpages
      */
     public IDictionary<URI, IDictionary<String, Double>> getDocumentTfIdfVectors() {
-        return this.documentTfIdfVectors;
-    }
-
-    /**
-     * Returns a dictionary mapping every single unique word found
-     * in any documents to their IDF score.
-     */
-    private IDictionary<String, Double> computeIdfScores(ISet<Webpage> pages) {
-    	IDictionary<String, KVPair<URI, Integer>> wordFrequency = 
-    			new ChainedHashDictionary<String, KVPair<URI, Integer>>();
-    	IDictionary<String, Double> computedIdfScores = new ChainedHashDictionary<String, Double>();
-    	
-    	// calculate word frequency
-    	for (Webpage webpage : pages) {
-    		URI uri = webpage.getUri();
-    		IList<String> words = webpage.getWords();
-    		for (String word : words) {
-    			if (!wordFrequency.containsKey(word)) {
-    				wordFrequency.put(word, new KVPair<URI, Integer>(uri, 1));
-    			} else {
-    				KVPair<URI, Integer> wordDocToFreq = wordFrequency.get(word);
-        			int freq = wordDocToFreq.getValue();
-    				if (!wordDocToFreq.getKey().equals(uri)) {
-    					KVPair<URI, Integer> updatedFreq = new KVPair<URI, Integer>(uri, freq + 1);
-    					wordFrequency.put(word, updatedFreq);
-        			} 
+    	IDictionary<URI, IDictionary<String, Double>> output =
+    			new OpenHashDictionary<URI, IDictionary<String, Double>>(this.documents.size());
+    	for (int document = 0; document < this.documentTfIdfVectors.length; document++) {
+    		SparseVector vector = this.documentTfIdfVectors[document];
+    		if (vector != null) {
+    			OpenDoubleDictionary<String> words = new OpenDoubleDictionary<String>(vector.size());
+    			for (int i = 0; i < vector.size(); i++) {
+    				words.putDouble(this.terms.getTerm(vector.getIndex(i)), vector.getWeight(i));
     			}
+    			output.put(this.documents.getUri(document), words);
     		}
     	}
-    	
-    	// calculate IDF score based on calculated word frequencies
-    	for (KVPair<String, KVPair<URI, Integer>> pair : wordFrequency) {
-    		String word = pair.getKey();
-    		KVPair<URI, Integer> wordDocToFreq = pair.getValue();
-    		double freq = (double) pages.size() / (double) wordDocToFreq.getValue();
-    		double idfScore = Math.log(freq);
-    		computedIdfScores.put(word, idfScore);
+    	return output;
+    }
+
+    /**
+     * Returns the TF-IDF vector of the document with the given ID, indexed by term ID,
+     * or null if the document was not one of the webpages given to the constructor.
+     */
+    public SparseVector getDocumentTfIdfVector(int document) {
+    	return this.documentTfIdfVectors[document];
+    }
+
+    /**
+     * Returns the TF vector of the document with the given ID, indexed by term ID,
+     * or null if the document was not one of the webpages given to the constructor.
+     */
+    public SparseVector getDocumentTfVector(int document) {
+    	return this.documentTfVectors[document];
+    }
+
+    /**
+     * Returns the dictionary mapping each webpage to its document ID.
+     */
+    public DocumentDictionary getDocuments() {
+    	return this.documents;
+    }
+
+    /**
+     * Returns the dictionary mapping every word in the documents to its term ID.
+     */
+    public TermDictionary getTerms() {
+    	return this.terms;
+    }
+
+    /**
+     * Returns the IDF score of every word in the documents, indexed by term ID.
+     */
+    public double[] getIdfScores() {
+    	return this.idfScores;
+    }
+
+    /**
+     * Returns the word counts of every given page, indexed by document ID.
+     */
+    private WordCounts[] countAllWords(ISet<Webpage> webpages) {
+    	Webpage[] pages = new Webpage[this.documents.size()];
+    	for (Webpage webpage : webpages) {
+    		pages[this.documents.getId(webpage.getUri())] = webpage;
     	}
-    	return computedIdfScores;
+    	WordCounts[] wordCounts = new WordCounts[pages.length];
+    	IntStream.range(0, pages.length).parallel().forEach(document -> {
+    		if (pages[document] != null) {
+    			wordCounts[document] = new WordCounts(pages[document].getWords());
+    		}
+    	});
+    	return wordCounts;
     }
 
     /**
-     * Returns a dictionary mapping every unique word found in the given list
-     * to their term frequency (TF) score.
+     * Assigns every word in the given pages a term ID, and stores the term IDs of each
+     * page's words in the given array, in the same order as its WordCounts.
      *
-     * We are treating the list of words as if it were a document.
-     */
-    private IDictionary<String, Double> computeTfScores(IList<String> words) {
-    	IDictionary<String, Double> computedTfScores = new ChainedHashDictionary<String, Double>();
-    	double additionalFreq = 1.0 / (double) words.size();
-    	for (String word : words) {
-    		if (!computedTfScores.containsKey(word)) {
-    			computedTfScores.put(word, additionalFreq);
-    		} else {
-    			computedTfScores.put(word, computedTfScores.get(word) + additionalFreq);
+     * Returns an array mapping each term ID to the number of pages containing that term.
+     */
+    private int[] assignTermIds(WordCounts[] wordCounts, int[][] termIds) {
+    	int[] documentFrequencies = new int[16];
+    	for (int document = 0; document < wordCounts.length; document++) {
+    		if (wordCounts[document] == null) {
+    			continue;
+    		}
+    		String[] words = wordCounts[document].words;
+    		termIds[document] = new int[words.length];
+    		for (int i = 0; i < words.length; i++) {
+    			int termId = this.terms.add(words[i]);
+    			if (termId >= documentFrequencies.length) {
+    				documentFrequencies = Arrays.copyOf(documentFrequencies,
+    						Math.max(termId + 1, documentFrequencies.length * 2));
+    			}
+    			documentFrequencies[termId]++;
+    			termIds[document][i] = termId;
+    		}
+    	}
+    	return documentFrequencies;
+    }
+
+    /**
+     * Returns an array mapping every term ID to its IDF score, given the number of
+     * documents containing each term.
+     */
+    private double[] computeIdfScores(int[] documentFrequencies, int numDocuments) {
+    	double[] computedIdfScores = new double[this.terms.size()];
+    	for (int termId = 0; termId < computedIdfScores.length; termId++) {
+    		double freq = (double) numDocuments / (double) documentFrequencies[termId];
+    		computedIdfScores[termId] = Math.log(freq);
+    	}
+    	return computedIdfScores;
+    }
+
+    /**
+     * Fills in the TF and TF-IDF vectors of every webpage's document ID.
+     */
+    private void computeAllDocumentVectors(WordCounts[] wordCounts, int[][] termIds) {
+    	IntStream.range(0, wordCounts.length).parallel().forEach(document -> {
+    		if (wordCounts[document] != null) {
+    			SparseVector tfVector = this.computeTfVector(wordCounts[document], termIds[document]);
+    			this.documentTfVectors[document] = tfVector;
+    			// The TF-IDF vector shares the TF vector's indices, so it only costs its weights.
+    			this.documentTfIdfVectors[document] = tfVector.scale(this.idfScores);
     		}
+    	});
+    }
+
+    /**
+     * Returns the TF vector of a page, given its word counts and the term ID of
+     * each of its words.
+     */
+    private SparseVector computeTfVector(WordCounts wordCounts, int[] termIds) {
+    	// The vector must be sorted by term ID, so we sort the positions of the words
+    	// by their term IDs, packing both into a long so we can use a primitive sort.
+    	long[] order = new long[termIds.length];
+    	for (int i = 0; i < termIds.length; i++) {
+    		order[i] = ((long) termIds[i] << 32) | i;
+    	}
+    	Arrays.sort(order);
+
+    	int[] indices = new int[order.length];
+    	double[] tfScores = new double[order.length];
+    	for (int i = 0; i < order.length; i++) {
+    		int word = (int) order[i];
+    		indices[i] = (int) (order[i] >>> 32);
+    		tfScores[i] = wordCounts.counts[word] / (double) wordCounts.totalWords;
     	}
-    	return computedTfScores;
+    	return new SparseVector(indices, tfScores);
     }
 
     /**
-     * Returns a dictionary mapping every webpage to its own TF-IDF vector.
+     * Computes the TF-IDF vector for the given query so it can be scored against
+     * any number of documents.
+     *
+     * Words that do not appear in any of the documents are omitted from the vector
+     * since their weight is always zero.
      */
-    private IDictionary<URI, IDictionary<String, Double>> computeAllDocumentTfIdfVectors(ISet<Webpage> pages) {
-        IDictionary<URI, IDictionary<String, Double>> computedTfIdfVectors = 
-        		new ChainedHashDictionary<URI, IDictionary<String, Double>>();
-        for (Webpage webpage : pages) {
-        	URI uri = webpage.getUri();
-        	IList<String> words = webpage.getWords();
-        	IDictionary<String, Double> tfIdfScores = new ArrayDictionary<String, Double>();
-        	for (KVPair<String, Double> pair : this.computeTfScores(words)) {
-        		String word = pair.getKey();
-        		double tfIdf = pair.getValue() * idfScores.get(word);
-        		tfIdfScores.put(word, tfIdf);
-        	}
-        	computedTfIdfVectors.put(uri, tfIdfScores);
-        }
-        return computedTfIdfVectors;
-        
+    public PreparedQuery prepareQuery(IList<String> query) {
+    	return PreparedQuery.prepare(query, this.terms, this.idfScores);
     }
 
     /**
@@ -133,60 +253,51 @@ public class TfIdfAnalyzer {
      *               webpages given to the constructor.
      */
     public Double computeRelevance(IList<String> query, URI pageUri) {
-    	if (!documentTfIdfVectors.containsKey(pageUri)) {
+    	int document = this.documents.getId(pageUri);
+    	if (document < 0) {
     		throw new IllegalArgumentException();
     	}
-    	IDictionary<String, Double> documentVector = this.documentTfIdfVectors.get(pageUri);
-    	IDictionary<String, Double> queryTermFrequency = this.computeTfScores(query);
-    	
-    	double numerator = 0.0;
-    	double queryMagnitude = 0.0;
-    	for (KVPair<String, Double> queryWord : queryTermFrequency) {
-    		String word = queryWord.getKey();
-    		double queryTfScore = queryWord.getValue();
-    		double queryWordScore = 0.0;
-    		if (this.idfScores.containsKey(word)) {
-    			queryWordScore = queryTfScore * this.idfScores.get(word);
-    		}
-    		queryMagnitude += queryWordScore * queryWordScore;
-    		double docWordScore = 0.0;
-    		if (documentVector.containsKey(word)) {
-    			docWordScore = documentVector.get(word);
-    		}
-    		numerator += docWordScore * queryWordScore;
-    	}
-    	queryMagnitude = Math.sqrt(queryMagnitude);
-    	double denominator = this.documentTfIdfNormVectors.get(pageUri) * queryMagnitude;
-    	if (denominator != 0.0) {
-    		return numerator / denominator;
-    	} else {
-    		return 0.0;
-    	}
+    	return this.computeRelevance(this.prepareQuery(query), document);
     }
-    
+
     /**
-     * Returns a dictionary mapping each webpage to the magnitude of the TF-IDF vector.
+     * Returns the cosine similarity between the TF-IDF vector for the given prepared
+     * query and the document with the given ID.
+     *
+     * Precondition: the given document must have been one of the webpages given to
+     *               the constructor.
      */
-    private IDictionary<URI, Double> computeDocumentNormVector() {
-    	IDictionary<URI, Double> documentNormVectors = new ArrayDictionary<URI, Double>();
-    	for (KVPair<URI, IDictionary<String, Double>> pair : this.documentTfIdfVectors) {
-    		URI uri = pair.getKey();
-    		IDictionary<String, Double> vector = pair.getValue();
-    		double norm = this.norm(vector);
-    		documentNormVectors.put(uri, norm);
+    public double computeRelevance(PreparedQuery query, int document) {
+    	SparseVector documentVector = this.documentTfIdfVectors[document];
+    	if (documentVector == null) {
+    		throw new IllegalArgumentException();
     	}
-    	return documentNormVectors;
+    	return documentVector.cosineSimilarity(query.getVector());
     }
-    
+
     /**
-     * Calculates the magnitude of a vector (the Euclidean norm magnitude).
+     * The distinct words of a single page, along with how many times each one appears.
      */
-    private double norm(IDictionary<String, Double> vector) {
-    	double output = 0.0;
-    	for (KVPair<String, Double> pair : vector) {
-    		double score = pair.getValue();
-    		output += score * score;
+    private static class WordCounts {
+    	private String[] words;
+    	private double[] counts;
+    	private int totalWords;
+
+    	public WordCounts(IList<String> pageWords) {
+    		OpenDoubleDictionary<String> wordCounts = new OpenDoubleDictionary<String>(pageWords.size());
+    		for (String word : pageWords) {
+    			wordCounts.addTo(word, 1.0);
+    		}
+
+    		this.words = new String[wordCounts.size()];
+    		this.counts = new double[wordCounts.size()];
+    		int next = 0;
+    		for (KVPair<String, Double> pair : wordCounts) {
+    			this.words[next] = pair.getKey();
+    			this.counts[next] = pair.getValue();
+    			next++;
+    		}
+    		this.totalWords = pageWords.size();
     	}
-    	return Math.sqrt(output);
     }
 }
@@ -0,0 +1,56 @@
+package search.index;
+
+import java.util.Arrays;
+
+/**
+ * A posting list held in a pair of growable arrays, used while building an index.
+ *
+ * Documents must be added in strictly increasing order, so the list is always
+ * sorted by document.
+ */
+public class ArrayPostingList implements PostingList {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] documents;
+    private double[] weights;
+    private int size;
+
+    public ArrayPostingList() {
+        this.documents = new int[DEFAULT_CAPACITY];
+        this.weights = new double[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Appends the given document and weight to the end of this posting list.
+     *
+     * @throws IllegalArgumentException  if the document is not larger than the last one added
+     */
+    public void add(int document, double weight) {
+        if (this.size > 0 && document <= this.documents[this.size - 1]) {
+            throw new IllegalArgumentException("Documents must be added in increasing order");
+        }
+        if (this.size == this.documents.length) {
+            this.documents = Arrays.copyOf(this.documents, this.size * 2);
+            this.weights = Arrays.copyOf(this.weights, this.size * 2);
+        }
+        this.documents[this.size] = document;
+        this.weights[this.size] = weight;
+        this.size++;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int getDocument(int i) {
+        return this.documents[i];
+    }
+
+    @Override
+    public double getWeight(int i) {
+        return this.weights[i];
+    }
+}
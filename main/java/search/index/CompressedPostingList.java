@@ -0,0 +1,312 @@
+package search.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact, read-only posting list, stored in a ByteBuffer that may be on the heap
+ * or a memory mapping of an index file written by IndexWriter.
+ *
+ * The postings are split into blocks of BLOCK_SIZE. Within a block, each document is
+ * stored as its distance from the block's first document using just as many bits as
+ * the largest distance needs (frame-of-reference coding), so dense posting lists take
+ * a few bits per document. Each weight is quantized to 16 bits, as a tiny floating
+ * point number: its ratio to the largest weight in the list, rounded to 11 bits of
+ * mantissa with a 5-bit exponent. Every weight is therefore stored to within about
+ * 0.025% of itself, however much smaller it is than the largest (down to 2^-31 of
+ * it), so pages where a word is rare keep their order even when one outlier page
+ * sets the list's scale. Every posting takes the same number of bits within its
+ * block, so we can still find the i-th posting without decoding the ones before it.
+ *
+ * A list is laid out as follows:
+ *
+ * - A header: the number of postings as a 4-byte integer and the largest weight as an
+ *   8-byte double.
+ * - A skip table: for each block, its first and last document, the offset of its
+ *   packed documents from the start of the list and the number of bits per document,
+ *   all as 4-byte integers. advance uses the last documents to skip whole blocks.
+ * - The quantized weights, as 2-byte unsigned integers.
+ * - The packed documents of each block, most significant bit first, followed by
+ *   8 bytes of padding so we can always read a whole long.
+ *
+ * We only ever use the buffer's absolute get methods, which leave its position
+ * alone, so many threads can share the same buffer.
+ */
+public class CompressedPostingList implements PostingList {
+    /**
+     * The number of postings in each block.
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    // A quantized weight is the top bits of the double holding its ratio to the largest
+    // weight: the low bits of the exponent, then MANTISSA_BITS of the mantissa. Ratios
+    // are at most 1, so their exponents are at most 1023 (the bias). We store them
+    // minus MIN_EXPONENT, which leaves 31 binades below 1 in the remaining 5 bits.
+    private static final int WEIGHT_MASK = 0xFFFF;
+    private static final int MANTISSA_BITS = 11;
+    private static final int DROPPED_BITS = 52 - MANTISSA_BITS;
+    private static final long MIN_EXPONENT = 1023 - 31;
+    private static final long MIN_LEVEL_BITS = MIN_EXPONENT << MANTISSA_BITS;
+    private static final int HEADER_BYTES = Integer.BYTES + Double.BYTES;
+    private static final int SKIP_ENTRY_BYTES = 4 * Integer.BYTES;
+    private static final int PADDING_BYTES = Long.BYTES;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private int size;
+    private double maxWeight;
+    private int weightsOffset;
+
+    // The skip table, copied out of the buffer since we read it on every lookup.
+    // It takes about a tenth of a byte per posting.
+    private int[] firstDocuments;
+    private int[] lastDocuments;
+    private int[] dataOffsets;
+    private byte[] bitWidths;
+
+    /**
+     * Reads the list stored at the given offset in the buffer.
+     */
+    public CompressedPostingList(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.size = buffer.getInt(offset);
+        this.maxWeight = buffer.getDouble(offset + Integer.BYTES);
+
+        int numBlocks = numBlocks(this.size);
+        this.firstDocuments = new int[numBlocks];
+        this.lastDocuments = new int[numBlocks];
+        this.dataOffsets = new int[numBlocks];
+        this.bitWidths = new byte[numBlocks];
+        for (int block = 0; block < numBlocks; block++) {
+            int entry = offset + HEADER_BYTES + block * SKIP_ENTRY_BYTES;
+            this.firstDocuments[block] = buffer.getInt(entry);
+            this.lastDocuments[block] = buffer.getInt(entry + Integer.BYTES);
+            this.dataOffsets[block] = offset + buffer.getInt(entry + 2 * Integer.BYTES);
+            this.bitWidths[block] = (byte) buffer.getInt(entry + 3 * Integer.BYTES);
+        }
+        this.weightsOffset = offset + HEADER_BYTES + numBlocks * SKIP_ENTRY_BYTES;
+
+        int dataEnd = this.weightsOffset + this.size * Short.BYTES;
+        if (numBlocks > 0) {
+            int lastBlockSize = this.size - (numBlocks - 1) * BLOCK_SIZE;
+            dataEnd = this.dataOffsets[numBlocks - 1] + (lastBlockSize * this.bitWidths[numBlocks - 1] + 7) / 8;
+        }
+        this.length = dataEnd + PADDING_BYTES - offset;
+    }
+
+    /**
+     * Returns a compressed copy of the given postings.
+     *
+     * Precondition: every weight is positive.
+     */
+    public static CompressedPostingList compress(PostingList postings) {
+        return new CompressedPostingList(ByteBuffer.wrap(encode(postings)), 0);
+    }
+
+    /**
+     * Returns the encoding of the given postings read by the constructor.
+     *
+     * Encoding the postings of a CompressedPostingList gives back the same weights,
+     * so lists that are decoded and encoded again (when segments are merged, for
+     * example) do not lose any more precision.
+     *
+     * Precondition: every weight is positive.
+     */
+    public static byte[] encode(PostingList postings) {
+        int size = postings.size();
+        int numBlocks = numBlocks(size);
+        double maxWeight = 0.0;
+        for (int i = 0; i < size; i++) {
+            maxWeight = Math.max(maxWeight, postings.getWeight(i));
+        }
+
+        int[] bitWidths = new int[numBlocks];
+        int dataBytes = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, size);
+            int span = postings.getDocument(end - 1) - postings.getDocument(start);
+            bitWidths[block] = Integer.SIZE - Integer.numberOfLeadingZeros(span);
+            dataBytes += (int) (((long) (end - start) * bitWidths[block] + 7) / 8);
+        }
+
+        int skipsOffset = HEADER_BYTES;
+        int weightsOffset = skipsOffset + numBlocks * SKIP_ENTRY_BYTES;
+        int dataOffset = weightsOffset + size * Short.BYTES;
+        byte[] bytes = new byte[dataOffset + dataBytes + PADDING_BYTES];
+        ByteBuffer out = ByteBuffer.wrap(bytes);
+        out.putInt(0, size);
+        out.putDouble(Integer.BYTES, maxWeight);
+
+        for (int i = 0; i < size; i++) {
+            out.putShort(weightsOffset + i * Short.BYTES, (short) quantize(postings.getWeight(i) / maxWeight));
+        }
+
+        for (int block = 0; block < numBlocks; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, size);
+            int firstDocument = postings.getDocument(start);
+            int entry = skipsOffset + block * SKIP_ENTRY_BYTES;
+            out.putInt(entry, firstDocument);
+            out.putInt(entry + Integer.BYTES, postings.getDocument(end - 1));
+            out.putInt(entry + 2 * Integer.BYTES, dataOffset);
+            out.putInt(entry + 3 * Integer.BYTES, bitWidths[block]);
+
+            long bit = (long) dataOffset * 8;
+            for (int i = start; i < end; i++) {
+                int value = postings.getDocument(i) - firstDocument;
+                for (int b = bitWidths[block] - 1; b >= 0; b--) {
+                    if (((value >>> b) & 1) != 0) {
+                        bytes[(int) (bit >>> 3)] |= 0x80 >>> (bit & 7);
+                    }
+                    bit++;
+                }
+            }
+            dataOffset = (int) ((bit + 7) / 8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the 16-bit level of the given ratio of a weight to the largest weight,
+     * rounded to the nearest level. Ratios too small to store get the smallest level,
+     * since every weight must stay positive: scoring treats zero as "not seen".
+     */
+    private static int quantize(double ratio) {
+        long bits = Double.doubleToRawLongBits(ratio) + (1L << (DROPPED_BITS - 1));
+        return (int) Math.max(0, (bits >>> DROPPED_BITS) - MIN_LEVEL_BITS);
+    }
+
+    private double dequantize(int level) {
+        return Double.longBitsToDouble((level + MIN_LEVEL_BITS) << DROPPED_BITS) * this.maxWeight;
+    }
+
+    /**
+     * Returns a copy of this list's encoding, exactly as encode returned it, so it can
+     * be written out again without decoding and re-encoding the postings.
+     */
+    public byte[] getEncoding() {
+        byte[] bytes = new byte[this.length];
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(this.offset);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private static int numBlocks(int size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int getDocument(int i) {
+        int block = i / BLOCK_SIZE;
+        int bitWidth = this.bitWidths[block];
+        if (bitWidth == 0) {
+            return this.firstDocuments[block];
+        }
+        // Read the 8 bytes starting at the one holding the value's first bit, then
+        // shift the value's bits to the top of the long and back down to the bottom.
+        int bit = (i % BLOCK_SIZE) * bitWidth;
+        long word = this.buffer.getLong(this.dataOffsets[block] + (bit >>> 3));
+        return this.firstDocuments[block] + (int) ((word << (bit & 7)) >>> (Long.SIZE - bitWidth));
+    }
+
+    @Override
+    public double getWeight(int i) {
+        return this.dequantize(this.buffer.getShort(this.weightsOffset + i * Short.BYTES) & WEIGHT_MASK);
+    }
+
+    @Override
+    public void getDocuments(int from, int to, int[] documents) {
+        int i = from;
+        while (i < to) {
+            int block = i / BLOCK_SIZE;
+            int firstDocument = this.firstDocuments[block];
+            int bitWidth = this.bitWidths[block];
+            int blockEnd = Math.min((block + 1) * BLOCK_SIZE, to);
+            if (bitWidth == 0) {
+                for (; i < blockEnd; i++) {
+                    documents[i - from] = firstDocument;
+                }
+                continue;
+            }
+            int data = this.dataOffsets[block];
+            int shift = Long.SIZE - bitWidth;
+            for (int bit = (i % BLOCK_SIZE) * bitWidth; i < blockEnd; i++, bit += bitWidth) {
+                long word = this.buffer.getLong(data + (bit >>> 3));
+                documents[i - from] = firstDocument + (int) ((word << (bit & 7)) >>> shift);
+            }
+        }
+    }
+
+    @Override
+    public void getWeights(int from, int to, double[] weights) {
+        for (int i = from; i < to; i++) {
+            weights[i - from] = this.dequantize(this.buffer.getShort(this.weightsOffset + i * Short.BYTES) & WEIGHT_MASK);
+        }
+    }
+
+    /**
+     * Returns the index of the first posting at or after the given index whose document
+     * is at least the target, or size() if there is no such posting.
+     *
+     * We first find the block holding that posting by galloping over the last
+     * documents in the skip table, then binary search within the block, so we never
+     * decode the documents of the blocks we skip over.
+     */
+    @Override
+    public int advance(int from, int target) {
+        if (from >= this.size || this.getDocument(from) >= target) {
+            return from;
+        }
+        int numBlocks = this.lastDocuments.length;
+        int block = from / BLOCK_SIZE;
+        if (this.lastDocuments[block] < target) {
+            // Invariant: lastDocuments[low] < target, and lastDocuments[high] >= target if high < numBlocks.
+            int low = block;
+            int step = 1;
+            int high = block + step;
+            while (high < numBlocks && this.lastDocuments[high] < target) {
+                low = high;
+                step *= 2;
+                high = low + step;
+            }
+            high = Math.min(high, numBlocks);
+            while (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if (this.lastDocuments[middle] < target) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            if (high == numBlocks) {
+                return this.size;
+            }
+            block = high;
+            from = block * BLOCK_SIZE;
+            if (this.getDocument(from) >= target) {
+                return from;
+            }
+        }
+
+        // Invariant: getDocument(low) < target <= getDocument(high).
+        int low = from;
+        int high = Math.min((block + 1) * BLOCK_SIZE, this.size) - 1;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (this.getDocument(middle) < target) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+}
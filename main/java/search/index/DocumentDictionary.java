@@ -0,0 +1,53 @@
+package search.index;
+
+import datastructures.interfaces.ISet;
+import search.models.Webpage;
+
+import java.net.URI;
+
+/**
+ * Assigns every document in the corpus a dense integer ID and translates between
+ * a document's URI and its ID.
+ *
+ * IDs are handed out in the order documents are added, starting from 0, so they
+ * can be used directly as indices into arrays of per-document data.
+ */
+public class DocumentDictionary extends IdDictionary<URI> {
+    public DocumentDictionary() {
+        super();
+    }
+
+    /**
+     * Constructs a dictionary assigning IDs to the given webpages in iteration order.
+     */
+    public DocumentDictionary(ISet<Webpage> webpages) {
+        this();
+        for (Webpage webpage : webpages) {
+            this.add(webpage.getUri());
+        }
+    }
+
+    /**
+     * Returns the ID of the given URI, assigning it the next available ID if it
+     * has not been added before.
+     */
+    public int add(URI uri) {
+        return this.addKey(uri);
+    }
+
+    /**
+     * Returns the ID of the given URI, or -1 if the URI was never added.
+     */
+    public int getId(URI uri) {
+        return this.getKeyId(uri);
+    }
+
+    /**
+     * Returns the URI of the document with the given ID.
+     *
+     * @throws IndexOutOfBoundsException  if id < 0 or id >= this.size()
+     */
+    public URI getUri(int id) {
+        return this.getKey(id);
+    }
+}
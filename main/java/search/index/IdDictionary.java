@@ -0,0 +1,70 @@
+package search.index;
+
+import datastructures.concrete.dictionaries.OpenHashDictionary;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every distinct key a dense integer ID and translates between a key and
+ * its ID. This is the shared implementation of TermDictionary and DocumentDictionary.
+ *
+ * IDs are handed out in the order keys are first added, starting from 0, so they
+ * can be used directly as indices into arrays of per-key data.
+ */
+abstract class IdDictionary<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private OpenHashDictionary<T, Integer> ids;
+    private Object[] keys;
+    private int size;
+
+    protected IdDictionary() {
+        this.ids = new OpenHashDictionary<>();
+        this.keys = new Object[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the ID of the given key, assigning it the next available ID if it
+     * has not been added before.
+     */
+    protected int addKey(T key) {
+        Integer existing = this.ids.putIfAbsent(key, this.size);
+        if (existing != null) {
+            return existing;
+        }
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+        }
+        this.keys[this.size] = key;
+        this.size++;
+        return this.size - 1;
+    }
+
+    /**
+     * Returns the ID of the given key, or -1 if the key was never added.
+     */
+    protected int getKeyId(T key) {
+        return this.ids.getOrDefault(key, -1);
+    }
+
+    /**
+     * Returns the key with the given ID.
+     *
+     * @throws IndexOutOfBoundsException  if id < 0 or id >= this.size()
+     */
+    @SuppressWarnings("unchecked")
+    protected T getKey(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (T) this.keys[id];
+    }
+
+    /**
+     * Returns the number of keys in this dictionary.
+     */
+    public int size() {
+        return this.size;
+    }
+}
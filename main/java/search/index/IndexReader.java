@@ -0,0 +1,190 @@
+package search.index;
+
+import search.misc.Varints;
+import search.models.WebpageSummary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads an index saved by IndexWriter. See IndexWriter for the layout of the index
+ * directory.
+ *
+ * The document and term files are memory-mapped and decoded in a single pass, which
+ * takes a small fraction of the time needed to parse the webpages and index them
+ * from scratch. The postings, which make up most of the index, are never copied
+ * onto the heap: each posting list is a CompressedPostingList reading straight out of
+ * a mapping of the postings file. This leaves it to the operating system's page
+ * cache to decide how much of them stays in memory, so an index can be much larger
+ * than the heap.
+ */
+public class IndexReader {
+    // A single mapping can cover at most 2GB, so we map the postings file in regions
+    // of about this many bytes, each holding the posting lists of consecutive terms.
+    private static final long MAX_REGION_BYTES = 1L << 30;
+
+    private InvertedIndex index;
+    private double[] pageRanks;
+    private WebpageSummary[] summaries;
+    private URI[][] links;
+
+    /**
+     * Reads the index stored in the given directory.
+     *
+     * @throws IOException  if the directory does not hold a complete index in the
+     *                      current format, or it could not be read
+     */
+    public IndexReader(Path directory) throws IOException {
+        ByteBuffer meta = map(directory.resolve(IndexWriter.META_FILE));
+        if (meta.getInt() != IndexWriter.MAGIC || meta.getInt() != IndexWriter.VERSION) {
+            throw new IOException("Unrecognized index in " + directory);
+        }
+        int generation = meta.getInt();
+        int numDocuments = meta.getInt();
+        int numTerms = meta.getInt();
+
+        DocumentDictionary documents = new DocumentDictionary();
+        double[] documentNorms = new double[numDocuments];
+        this.pageRanks = new double[numDocuments];
+        this.summaries = new WebpageSummary[numDocuments];
+        this.links = new URI[numDocuments][];
+        // Links can point to documents we have not read yet, so we resolve them after.
+        int[][] linkTargets = new int[numDocuments][];
+        ByteBuffer in = map(IndexWriter.dataFile(directory, IndexWriter.DOCUMENTS_PREFIX, generation));
+        for (int document = 0; document < numDocuments; document++) {
+            URI uri = URI.create(readString(in));
+            documents.add(uri);
+            this.summaries[document] = new WebpageSummary(uri, readString(in), readString(in));
+            documentNorms[document] = in.getDouble();
+            this.pageRanks[document] = in.getDouble();
+            this.links[document] = new URI[Varints.readInt(in)];
+            linkTargets[document] = new int[this.links[document].length];
+            for (int link = 0; link < this.links[document].length; link++) {
+                linkTargets[document][link] = Varints.readInt(in) - 1;
+                if (linkTargets[document][link] < 0) {
+                    this.links[document][link] = URI.create(readString(in));
+                }
+            }
+        }
+        for (int document = 0; document < numDocuments; document++) {
+            for (int link = 0; link < linkTargets[document].length; link++) {
+                if (linkTargets[document][link] >= 0) {
+                    this.links[document][link] = documents.getUri(linkTargets[document][link]);
+                }
+            }
+        }
+
+        TermDictionary terms = new TermDictionary();
+        double[] idfScores = new double[numTerms];
+        int[] sizes = new int[numTerms];
+        long[] offsets = new long[numTerms];
+        int[] lengths = new int[numTerms];
+        in = map(IndexWriter.dataFile(directory, IndexWriter.TERMS_PREFIX, generation));
+        for (int term = 0; term < numTerms; term++) {
+            terms.add(readString(in));
+            idfScores[term] = in.getDouble();
+            sizes[term] = Varints.readInt(in);
+            if (sizes[term] > 0) {
+                offsets[term] = Varints.readLong(in);
+                lengths[term] = Varints.readInt(in);
+            }
+        }
+
+        PostingList[] postings = new PostingList[numTerms];
+        Path postingsFile = IndexWriter.dataFile(directory, IndexWriter.POSTINGS_PREFIX, generation);
+        try (FileChannel channel = FileChannel.open(postingsFile, StandardOpenOption.READ)) {
+            int term = 0;
+            while (term < numTerms) {
+                if (sizes[term] == 0) {
+                    term++;
+                    continue;
+                }
+                // Grow the region one term at a time until the next term would not fit.
+                long regionStart = offsets[term];
+                long regionEnd = regionStart + lengths[term];
+                int regionTerms = term + 1;
+                while (regionTerms < numTerms) {
+                    if (sizes[regionTerms] > 0) {
+                        long end = offsets[regionTerms] + lengths[regionTerms];
+                        if (end - regionStart > MAX_REGION_BYTES) {
+                            break;
+                        }
+                        regionEnd = end;
+                    }
+                    regionTerms++;
+                }
+
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+                for (; term < regionTerms; term++) {
+                    if (sizes[term] > 0) {
+                        postings[term] = new CompressedPostingList(region, (int) (offsets[term] - regionStart));
+                    }
+                }
+            }
+        }
+
+        this.index = new InvertedIndex(documents, terms, idfScores, documentNorms, postings);
+    }
+
+    /**
+     * Returns true if the given directory holds a complete index in the current format.
+     */
+    public static boolean exists(Path directory) {
+        Path path = directory.resolve(IndexWriter.META_FILE);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            ByteBuffer meta = map(path);
+            return meta.getInt() == IndexWriter.MAGIC && meta.getInt() == IndexWriter.VERSION;
+        } catch (IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the inverted index.
+     */
+    public InvertedIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the page rank of every document, indexed by document ID.
+     */
+    public double[] getPageRanks() {
+        return this.pageRanks;
+    }
+
+    /**
+     * Returns the summary of every document, indexed by document ID.
+     */
+    public WebpageSummary[] getSummaries() {
+        return this.summaries;
+    }
+
+    /**
+     * Returns the links out of every document, indexed by document ID.
+     */
+    public URI[][] getLinks() {
+        return this.links;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[Varints.readInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
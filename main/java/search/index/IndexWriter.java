@@ -0,0 +1,204 @@
+package search.index;
+
+import search.misc.Varints;
+import search.models.WebpageSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Saves an inverted index, along with the page rank, summary and outgoing links of
+ * every document, to a directory on disk so an IndexReader can load it again without
+ * re-indexing.
+ *
+ * The index directory contains the following files, where N is the generation of the
+ * index, which goes up by one every time an index is written to the directory:
+ *
+ * - index.meta: the magic number, the format version, the generation, the number of
+ *   documents and the number of terms, as 4-byte integers.
+ * - documents-N.dat: for each document in ID order, its URI, title and blurb, then its
+ *   norm and its page rank as 8-byte doubles, then the number of links out of it.
+ *   Each link is stored as the ID of the document it points to plus one, or as a 0
+ *   followed by its URI if it points outside the index.
+ * - terms-N.dat: for each term in ID order, the term itself, the IDF score the norms
+ *   were computed with as an 8-byte double, the number of postings, and (if there are any) where they start
+ *   in postings-N.dat and how many bytes they take up.
+ * - postings-N.dat: the posting list of every term, encoded by CompressedPostingList.
+ *   Each posting's weight is the term's TF in the document.
+ *
+ * Strings are written as their length in bytes followed by their UTF-8 encoding.
+ * Links, and counts, lengths and offsets in terms-N.dat, are written as varints.
+ *
+ * The data files of a new index never overwrite those of the previous one. They are
+ * written under the next generation number, and only then is the new index.meta moved
+ * over the old one, which is atomic. Until then, readers still find the previous
+ * index complete and unchanged, so a write that crashes or fails part way leaves
+ * it readable.
+ */
+public class IndexWriter {
+    static final int MAGIC = 0x49445831;
+    static final int VERSION = 6;
+
+    static final String META_FILE = "index.meta";
+    static final String DOCUMENTS_PREFIX = "documents-";
+    static final String TERMS_PREFIX = "terms-";
+    static final String POSTINGS_PREFIX = "postings-";
+    static final String DATA_SUFFIX = ".dat";
+
+    // Matches the data files of every generation, and those of older formats, which
+    // had no generation.
+    private static final Pattern DATA_FILE = Pattern.compile("(documents|terms|postings)(-(\\d+))?\\.dat");
+
+    private IndexWriter() {
+    }
+
+    /**
+     * Writes the given index to the directory, recording no links for any document.
+     * See the other overload.
+     */
+    public static void write(Path directory, InvertedIndex index, double[] pageRanks,
+                             WebpageSummary[] summaries) throws IOException {
+        write(directory, index, pageRanks, summaries, new URI[index.getDocuments().size()][0]);
+    }
+
+    /**
+     * Writes the given index to the directory, replacing any index already there.
+     * Entry i of pageRanks, summaries and links belongs to the document with ID i.
+     *
+     * If this throws, the directory still holds the index that was there before.
+     */
+    public static void write(Path directory, InvertedIndex index, double[] pageRanks,
+                             WebpageSummary[] summaries, URI[][] links) throws IOException {
+        Files.createDirectories(directory);
+        int generation = findLatestGeneration(directory) + 1;
+
+        DocumentDictionary documents = index.getDocuments();
+        try (DataOutputStream out = open(dataFile(directory, DOCUMENTS_PREFIX, generation))) {
+            for (int document = 0; document < documents.size(); document++) {
+                writeString(out, documents.getUri(document).toString());
+                writeString(out, summaries[document].getTitle());
+                writeString(out, summaries[document].getBlurb());
+                out.writeDouble(index.getDocumentNorm(document));
+                out.writeDouble(pageRanks[document]);
+                Varints.writeInt(out, links[document].length);
+                for (URI link : links[document]) {
+                    int target = documents.getId(link);
+                    Varints.writeInt(out, target + 1);
+                    if (target < 0) {
+                        writeString(out, link.toString());
+                    }
+                }
+            }
+        }
+
+        TermDictionary terms = index.getTerms();
+        try (DataOutputStream termsOut = open(dataFile(directory, TERMS_PREFIX, generation));
+             DataOutputStream postingsOut = open(dataFile(directory, POSTINGS_PREFIX, generation))) {
+            long offset = 0;
+            for (int term = 0; term < terms.size(); term++) {
+                writeString(termsOut, terms.getTerm(term));
+                termsOut.writeDouble(index.getIdfScore(term));
+
+                PostingList postings = index.getPostings(term);
+                if (postings == null) {
+                    Varints.writeInt(termsOut, 0);
+                    continue;
+                }
+                // Lists that are already compressed (all of them, unless the index was
+                // built by hand) are copied through as they are, rather than decoded and
+                // quantized again.
+                byte[] encoded = postings instanceof CompressedPostingList
+                        ? ((CompressedPostingList) postings).getEncoding()
+                        : CompressedPostingList.encode(postings);
+                Varints.writeInt(termsOut, postings.size());
+                Varints.writeLong(termsOut, offset);
+                Varints.writeInt(termsOut, encoded.length);
+                postingsOut.write(encoded);
+                offset += encoded.length;
+            }
+        }
+
+        Path meta = directory.resolve(META_FILE);
+        Path temp = meta.resolveSibling(META_FILE + ".tmp");
+        try (DataOutputStream out = open(temp)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generation);
+            out.writeInt(documents.size());
+            out.writeInt(terms.size());
+        }
+        Files.move(temp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        deleteOtherGenerations(directory, generation);
+    }
+
+    /**
+     * Returns the path of the data file with the given prefix for the given generation.
+     */
+    static Path dataFile(Path directory, String prefix, int generation) {
+        return directory.resolve(prefix + generation + DATA_SUFFIX);
+    }
+
+    /**
+     * Returns the highest generation of any data file in the directory, or 0 if there
+     * are none. This includes the files of writes that never finished, so we never
+     * reuse their names.
+     */
+    private static int findLatestGeneration(Path directory) throws IOException {
+        int latest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = DATA_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(3) != null) {
+                    latest = Math.max(latest, Integer.parseInt(matcher.group(3)));
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the data files of every generation but the given one: those of the
+     * index just replaced, and any left behind by writes that never finished.
+     *
+     * The replaced index may still be open, for example by the SearchEngine whose index
+     * we just wrote, which reads its postings straight out of a mapping of its postings
+     * file. On most systems the mapping stays valid after the file is deleted, but some
+     * (Windows, in particular) refuse to delete a mapped file. We leave such files for
+     * a later write to delete.
+     */
+    private static void deleteOtherGenerations(Path directory, int generation) throws IOException {
+        String suffix = "-" + generation + DATA_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (DATA_FILE.matcher(name).matches() && !name.endsWith(suffix)) {
+                    try {
+                        Files.delete(file);
+                    } catch (IOException ex) {
+                        // Still in use: a later write will try again.
+                    }
+                }
+            }
+        }
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = (string == null ? "" : string).getBytes(StandardCharsets.UTF_8);
+        Varints.writeInt(out, bytes.length);
+        out.write(bytes);
+    }
+}
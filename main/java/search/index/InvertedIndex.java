@@ -0,0 +1,280 @@
+package search.index;
+
+import datastructures.interfaces.IList;
+import search.analyzers.TfIdfAnalyzer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An inverted index over the term frequency (TF) vectors computed by a TfIdfAnalyzer.
+ *
+ * For every term, the index stores a posting list of the documents containing it,
+ * where each posting's weight is the term's TF in the document. The cosine similarity
+ * between a query and a document is the sum of (query weight * IDF * posting weight)
+ * over the query's terms, divided by the norms of the query and of the document's
+ * TF-IDF vector. Leaving the IDF scores out of the postings means the postings never
+ * change once built: when pages are added to or removed from the collection, only the
+ * IDF scores and document norms move, and withIdfScores recomputes those without
+ * touching the postings. Once built, the posting lists are stored as
+ * CompressedPostingLists, which quantize the weights slightly, so the norms are
+ * computed from the quantized weights.
+ *
+ * Documents and terms are referred to by the IDs assigned by the analyzer's
+ * DocumentDictionary and TermDictionary. Along with the postings, the index keeps
+ * the IDF score of each term that its norms were computed with and each document's
+ * norm, which is everything needed to score queries once the analyzer is gone (for
+ * example, after reading the index back from disk with an IndexReader).
+ */
+public class InvertedIndex {
+    private DocumentDictionary documents;
+    private TermDictionary terms;
+    private double[] idfScores;
+    private double[] documentNorms;
+    private PostingList[] postings;
+
+    public InvertedIndex(TfIdfAnalyzer analyzer) {
+        this(analyzer, analyzer.getIdfScores());
+    }
+
+    /**
+     * Indexes the analyzer's documents, computing their norms with the given IDF
+     * scores rather than the analyzer's own. Entry i of idfScores belongs to the term
+     * with ID i in the analyzer's term dictionary.
+     *
+     * This lets a small batch of pages be indexed on its own and still be scored
+     * consistently with the rest of a larger collection.
+     */
+    public InvertedIndex(TfIdfAnalyzer analyzer, double[] idfScores) {
+        this.documents = analyzer.getDocuments();
+        this.terms = analyzer.getTerms();
+        ArrayPostingList[] builtPostings = new ArrayPostingList[this.terms.size()];
+
+        // Visiting documents in ID order keeps every posting list sorted by document.
+        for (int document = 0; document < this.documents.size(); document++) {
+            SparseVector vector = analyzer.getDocumentTfVector(document);
+            if (vector == null) {
+                continue;
+            }
+            for (int i = 0; i < vector.size(); i++) {
+                int termId = vector.getIndex(i);
+                if (builtPostings[termId] == null) {
+                    builtPostings[termId] = new ArrayPostingList();
+                }
+                builtPostings[termId].add(document, vector.getWeight(i));
+            }
+        }
+
+        // The compressed lists take about a quarter of the space, so more of them fit in
+        // the CPU caches while we score queries.
+        this.postings = new PostingList[this.terms.size()];
+        for (int termId = 0; termId < builtPostings.length; termId++) {
+            if (builtPostings[termId] != null) {
+                this.postings[termId] = CompressedPostingList.compress(builtPostings[termId]);
+            }
+        }
+        this.idfScores = idfScores;
+        this.documentNorms = computeDocumentNorms(this.postings, idfScores, this.documents.size());
+    }
+
+    /**
+     * Constructs an index from its parts. Entry i of idfScores and postings belongs to
+     * the term with ID i, and entry i of documentNorms to the document with ID i.
+     */
+    public InvertedIndex(DocumentDictionary documents, TermDictionary terms, double[] idfScores,
+                         double[] documentNorms, PostingList[] postings) {
+        this.documents = documents;
+        this.terms = terms;
+        this.idfScores = idfScores;
+        this.documentNorms = documentNorms;
+        this.postings = postings;
+    }
+
+    /**
+     * Returns a copy of this index whose document norms are computed with the given
+     * IDF scores, indexed by term ID. The copy shares this index's dictionaries and
+     * postings.
+     */
+    public InvertedIndex withIdfScores(double[] newIdfScores) {
+        return new InvertedIndex(this.documents, this.terms, newIdfScores,
+                computeDocumentNorms(this.postings, newIdfScores, this.documents.size()), this.postings);
+    }
+
+    /**
+     * Returns a single index over the documents of all the given indexes, leaving out
+     * the documents marked in the matching entry of deleted (which may be null if an
+     * index has no deleted documents).
+     *
+     * Documents get new IDs in order, first those of indexes[0], then those of
+     * indexes[1] and so on, so each merged posting list is just the lists of the
+     * given indexes one after the other. Terms are given new IDs in order of first
+     * appearance; terms left with no documents are dropped. The norms are computed
+     * with the IDF scores given for each term by idfScores.
+     */
+    public static InvertedIndex merge(InvertedIndex[] indexes, BitSet[] deleted, ToDoubleFunction<String> idfScores) {
+        DocumentDictionary mergedDocuments = new DocumentDictionary();
+        int[][] newIds = new int[indexes.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            DocumentDictionary documents = indexes[i].getDocuments();
+            newIds[i] = new int[documents.size()];
+            for (int document = 0; document < documents.size(); document++) {
+                boolean isDeleted = deleted[i] != null && deleted[i].get(document);
+                newIds[i][document] = isDeleted ? -1 : mergedDocuments.add(documents.getUri(document));
+            }
+        }
+
+        TermDictionary allTerms = new TermDictionary();
+        ArrayPostingList[] builtPostings = new ArrayPostingList[16];
+        int[] documents = new int[CompressedPostingList.BLOCK_SIZE];
+        double[] weights = new double[CompressedPostingList.BLOCK_SIZE];
+        for (int i = 0; i < indexes.length; i++) {
+            for (int termId = 0; termId < indexes[i].getTerms().size(); termId++) {
+                PostingList postings = indexes[i].getPostings(termId);
+                if (postings == null) {
+                    continue;
+                }
+                int mergedId = allTerms.add(indexes[i].getTerms().getTerm(termId));
+                if (mergedId >= builtPostings.length) {
+                    builtPostings = Arrays.copyOf(builtPostings, builtPostings.length * 2);
+                }
+                if (builtPostings[mergedId] == null) {
+                    builtPostings[mergedId] = new ArrayPostingList();
+                }
+                for (int from = 0; from < postings.size(); from += documents.length) {
+                    int to = Math.min(from + documents.length, postings.size());
+                    postings.getDocuments(from, to, documents);
+                    postings.getWeights(from, to, weights);
+                    for (int j = 0; j < to - from; j++) {
+                        int document = newIds[i][documents[j]];
+                        if (document >= 0) {
+                            builtPostings[mergedId].add(document, weights[j]);
+                        }
+                    }
+                }
+            }
+        }
+
+        TermDictionary mergedTerms = new TermDictionary();
+        PostingList[] mergedPostings = new PostingList[allTerms.size()];
+        for (int termId = 0; termId < allTerms.size(); termId++) {
+            if (builtPostings[termId].size() > 0) {
+                int mergedId = mergedTerms.add(allTerms.getTerm(termId));
+                mergedPostings[mergedId] = CompressedPostingList.compress(builtPostings[termId]);
+            }
+        }
+        mergedPostings = Arrays.copyOf(mergedPostings, mergedTerms.size());
+        double[] mergedIdfScores = new double[mergedTerms.size()];
+        for (int termId = 0; termId < mergedIdfScores.length; termId++) {
+            mergedIdfScores[termId] = idfScores.applyAsDouble(mergedTerms.getTerm(termId));
+        }
+        return new InvertedIndex(mergedDocuments, mergedTerms, mergedIdfScores,
+                computeDocumentNorms(mergedPostings, mergedIdfScores, mergedDocuments.size()), mergedPostings);
+    }
+
+    /**
+     * Returns the norm of every document's TF-IDF vector, given the postings and the
+     * IDF score of each term.
+     */
+    private static double[] computeDocumentNorms(PostingList[] postings, double[] idfScores, int numDocuments) {
+        double[] norms = new double[numDocuments];
+        int[] documents = new int[CompressedPostingList.BLOCK_SIZE];
+        double[] weights = new double[CompressedPostingList.BLOCK_SIZE];
+        for (int termId = 0; termId < postings.length; termId++) {
+            double idf = idfScores[termId];
+            if (postings[termId] == null || idf == 0.0) {
+                continue;
+            }
+            for (int from = 0; from < postings[termId].size(); from += documents.length) {
+                int to = Math.min(from + documents.length, postings[termId].size());
+                postings[termId].getDocuments(from, to, documents);
+                postings[termId].getWeights(from, to, weights);
+                for (int i = 0; i < to - from; i++) {
+                    double tfIdf = weights[i] * idf;
+                    norms[documents[i]] += tfIdf * tfIdf;
+                }
+            }
+        }
+        for (int document = 0; document < numDocuments; document++) {
+            norms[document] = Math.sqrt(norms[document]);
+        }
+        return norms;
+    }
+
+    /**
+     * Returns the dictionary mapping each indexed document to its ID.
+     */
+    public DocumentDictionary getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * Returns the dictionary mapping each indexed term to its ID.
+     */
+    public TermDictionary getTerms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the posting list for the given word, or null if no document contains
+     * the word.
+     */
+    public PostingList getPostings(String word) {
+        int termId = this.terms.getId(word);
+        return termId >= 0 ? this.getPostings(termId) : null;
+    }
+
+    /**
+     * Returns the posting list for the term with the given ID, or null if no document
+     * contains the term.
+     */
+    public PostingList getPostings(int termId) {
+        return this.postings[termId];
+    }
+
+    /**
+     * Returns the IDF score of the term with the given ID that the document norms
+     * were computed with.
+     */
+    public double getIdfScore(int termId) {
+        return this.idfScores[termId];
+    }
+
+    /**
+     * Returns the Euclidean norm of the TF-IDF vector of the document with the given ID.
+     */
+    public double getDocumentNorm(int document) {
+        return this.documentNorms[document];
+    }
+
+    /**
+     * Computes the TF-IDF vector for the given query so it can be scored against
+     * any number of documents.
+     */
+    public PreparedQuery prepareQuery(IList<String> query) {
+        return PreparedQuery.prepare(query, this.terms, this.idfScores);
+    }
+
+    /**
+     * Returns the cosine similarity between the given prepared query and the document
+     * with the given ID, looking the document up in each query term's posting list.
+     */
+    public double computeRelevance(PreparedQuery query, int document) {
+        double norm = this.documentNorms[document];
+        if (query.getMagnitude() == 0.0 || norm == 0.0) {
+            return 0.0;
+        }
+        SparseVector queryVector = query.getVector();
+        double dotProduct = 0.0;
+        for (int term = 0; term < queryVector.size(); term++) {
+            PostingList postings = this.postings[queryVector.getIndex(term)];
+            if (postings != null) {
+                int i = postings.advance(0, document);
+                if (i < postings.size() && postings.getDocument(i) == document) {
+                    dotProduct += queryVector.getWeight(term) * query.getIdfScore(term) * postings.getWeight(i);
+                }
+            }
+        }
+        return dotProduct / (query.getMagnitude() * norm);
+    }
+}
@@ -0,0 +1,143 @@
+package search.index;
+
+import datastructures.interfaces.ISet;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * The links between a set of webpages, as a directed graph whose nodes are the
+ * pages' document IDs.
+ *
+ * The graph is stored in compressed sparse row form: the targets of every node's
+ * links are kept in one shared array, sorted by node, and offsets[node] is the index
+ * of the node's first link in that array. The node's links end where the next
+ * node's begin, so offsets has one more entry than there are nodes. This takes just
+ * four bytes per link, and visiting every link is a sequential sweep over two arrays.
+ */
+public class LinkGraph {
+    private int[] offsets;
+    private int[] targets;
+
+    /**
+     * Builds the graph of links between the given webpages.
+     *
+     * Links to pages outside the set, links from a page to itself and repeated
+     * links are left out, so the graph is entirely self-contained.
+     *
+     * Precondition: the given document dictionary contains exactly the given webpages.
+     */
+    public LinkGraph(ISet<Webpage> webpages, DocumentDictionary documents) {
+        int[][] links = new int[documents.size()][];
+        int numLinks = 0;
+        for (Webpage webpage : webpages) {
+            int node = documents.getId(webpage.getUri());
+            int[] pageLinks = new int[webpage.getLinks().size()];
+            int numPageLinks = 0;
+            for (URI uri : webpage.getLinks()) {
+                int target = documents.getId(uri);
+                if (target >= 0 && target != node) {
+                    pageLinks[numPageLinks] = target;
+                    numPageLinks++;
+                }
+            }
+
+            // Sorting the targets puts repeated links next to each other, so we can
+            // drop them in the same pass as we squeeze the array down.
+            Arrays.sort(pageLinks, 0, numPageLinks);
+            int numUnique = 0;
+            for (int i = 0; i < numPageLinks; i++) {
+                if (numUnique == 0 || pageLinks[i] != pageLinks[numUnique - 1]) {
+                    pageLinks[numUnique] = pageLinks[i];
+                    numUnique++;
+                }
+            }
+            links[node] = Arrays.copyOf(pageLinks, numUnique);
+            numLinks += numUnique;
+        }
+
+        this.offsets = new int[links.length + 1];
+        this.targets = new int[numLinks];
+        for (int node = 0; node < links.length; node++) {
+            int start = this.offsets[node];
+            int[] nodeLinks = links[node] != null ? links[node] : new int[0];
+            System.arraycopy(nodeLinks, 0, this.targets, start, nodeLinks.length);
+            this.offsets[node + 1] = start + nodeLinks.length;
+        }
+    }
+
+    private LinkGraph(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Returns the transpose of this graph, which has a link from b to a for every
+     * link from a to b in this graph. Each node's links in the transpose are its
+     * incoming links in this graph, sorted by source.
+     */
+    public LinkGraph transpose() {
+        int numNodes = this.size();
+        int[] transposedOffsets = new int[numNodes + 1];
+        for (int target : this.targets) {
+            transposedOffsets[target + 1]++;
+        }
+        for (int node = 0; node < numNodes; node++) {
+            transposedOffsets[node + 1] += transposedOffsets[node];
+        }
+
+        // Visiting the sources in order fills each node's links in sorted order.
+        int[] next = Arrays.copyOf(transposedOffsets, numNodes);
+        int[] transposedTargets = new int[this.targets.length];
+        for (int source = 0; source < numNodes; source++) {
+            for (int link = this.offsets[source]; link < this.offsets[source + 1]; link++) {
+                int target = this.targets[link];
+                transposedTargets[next[target]] = source;
+                next[target]++;
+            }
+        }
+        return new LinkGraph(transposedOffsets, transposedTargets);
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     */
+    public int size() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * Returns the number of links in the graph.
+     */
+    public int numLinks() {
+        return this.targets.length;
+    }
+
+    /**
+     * Returns the number of links out of the given node.
+     */
+    public int getOutDegree(int node) {
+        return this.offsets[node + 1] - this.offsets[node];
+    }
+
+    /**
+     * Returns the offset array: the links out of node i are the entries of the target
+     * array from offsets[i] (inclusive) to offsets[i + 1] (exclusive).
+     *
+     * The array is shared with the graph, so callers must not modify it.
+     */
+    public int[] getOffsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Returns the target array, holding the nodes each node links to, in order of
+     * node. See getOffsets.
+     *
+     * The array is shared with the graph, so callers must not modify it.
+     */
+    public int[] getTargets() {
+        return this.targets;
+    }
+}
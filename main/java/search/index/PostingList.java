@@ -0,0 +1,79 @@
+package search.index;
+
+/**
+ * Represents the posting list for a single term: every document containing that
+ * term, along with the term's weight within that document.
+ *
+ * Documents are identified by their document number, and the postings are always
+ * sorted by document.
+ */
+public interface PostingList {
+    /**
+     * Returns the number of documents in this posting list.
+     */
+    int size();
+
+    /**
+     * Returns the document number of the i-th posting.
+     */
+    int getDocument(int i);
+
+    /**
+     * Returns the weight of the term within the i-th posting's document.
+     */
+    double getWeight(int i);
+
+    /**
+     * Copies the documents of postings from (inclusive) to to (exclusive) into the
+     * start of the given array. This is usually much faster than calling getDocument
+     * for each posting in turn.
+     */
+    default void getDocuments(int from, int to, int[] documents) {
+        for (int i = from; i < to; i++) {
+            documents[i - from] = this.getDocument(i);
+        }
+    }
+
+    /**
+     * Copies the weights of postings from (inclusive) to to (exclusive) into the
+     * start of the given array.
+     */
+    default void getWeights(int from, int to, double[] weights) {
+        for (int i = from; i < to; i++) {
+            weights[i - from] = this.getWeight(i);
+        }
+    }
+
+    /**
+     * Returns the index of the first posting at or after the given index whose document
+     * is at least the target, or size() if there is no such posting.
+     *
+     * We gallop forward from the starting index before binary searching, so short
+     * jumps (the common case while intersecting lists) only look at a few postings.
+     */
+    default int advance(int from, int target) {
+        int size = this.size();
+        if (from >= size || this.getDocument(from) >= target) {
+            return from;
+        }
+        // Invariant: getDocument(low) < target, and getDocument(high) >= target if high < size.
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && this.getDocument(high) < target) {
+            low = high;
+            step *= 2;
+            high = low + step;
+        }
+        high = Math.min(high, size);
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (this.getDocument(middle) < target) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+}
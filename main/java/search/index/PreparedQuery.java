@@ -0,0 +1,118 @@
+package search.index;
+
+import datastructures.interfaces.IList;
+
+import java.util.Arrays;
+
+/**
+ * Represents a search query that has been prepared for scoring: the query's words
+ * along with its TF-IDF vector and that vector's magnitude. The query also keeps
+ * the term dictionary and IDF scores it was prepared with, so the word and IDF score
+ * behind each entry of the vector can be looked up again.
+ *
+ * Preparing a query costs about as much as scoring it against a single document,
+ * so a query should be prepared once and then reused for every document we score.
+ */
+public class PreparedQuery {
+    private IList<String> terms;
+    private SparseVector vector;
+    private TermDictionary termDictionary;
+    private double[] idfScores;
+
+    /**
+     * Constructs a new prepared query.
+     *
+     * @param terms           The words making up the query.
+     * @param vector          The query's TF-IDF vector, indexed by term ID.
+     * @param termDictionary  The dictionary giving the term IDs of the vector.
+     * @param idfScores       The IDF score of each term ID.
+     */
+    public PreparedQuery(IList<String> terms, SparseVector vector, TermDictionary termDictionary, double[] idfScores) {
+        this.terms = terms;
+        this.vector = vector;
+        this.termDictionary = termDictionary;
+        this.idfScores = idfScores;
+    }
+
+    /**
+     * Prepares the given query for scoring against documents whose words were given
+     * IDs by the term dictionary, with the given IDF score for each term ID.
+     *
+     * Words that do not appear in any of the documents are omitted from the vector
+     * since their weight is always zero.
+     */
+    public static PreparedQuery prepare(IList<String> query, TermDictionary terms, double[] idfScores) {
+        return new PreparedQuery(query, computeTfVector(query, terms).scale(idfScores), terms, idfScores);
+    }
+
+    /**
+     * Returns the term frequency (TF) vector of the given list of words, indexed by
+     * term ID.
+     *
+     * Words missing from the term dictionary are left out of the vector.
+     */
+    private static SparseVector computeTfVector(IList<String> words, TermDictionary terms) {
+        int[] termIds = new int[words.size()];
+        int numTerms = 0;
+        for (String word : words) {
+            int termId = terms.getId(word);
+            if (termId >= 0) {
+                termIds[numTerms] = termId;
+                numTerms++;
+            }
+        }
+
+        // Sorting the term IDs groups together repeated words, so we can count
+        // each term by measuring the length of its run.
+        Arrays.sort(termIds, 0, numTerms);
+        int[] uniqueTermIds = new int[numTerms];
+        double[] tfScores = new double[numTerms];
+        int numUnique = 0;
+        for (int start = 0; start < numTerms;) {
+            int end = start;
+            while (end < numTerms && termIds[end] == termIds[start]) {
+                end++;
+            }
+            uniqueTermIds[numUnique] = termIds[start];
+            tfScores[numUnique] = (double) (end - start) / (double) words.size();
+            numUnique++;
+            start = end;
+        }
+        return new SparseVector(Arrays.copyOf(uniqueTermIds, numUnique), Arrays.copyOf(tfScores, numUnique));
+    }
+
+    /**
+     * Returns the words making up this query.
+     */
+    public IList<String> getTerms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the TF-IDF vector of this query, indexed by term ID.
+     */
+    public SparseVector getVector() {
+        return this.vector;
+    }
+
+    /**
+     * Returns the word behind entry i of the TF-IDF vector.
+     */
+    public String getTerm(int i) {
+        return this.termDictionary.getTerm(this.vector.getIndex(i));
+    }
+
+    /**
+     * Returns the IDF score the query was prepared with for entry i of the TF-IDF vector.
+     */
+    public double getIdfScore(int i) {
+        return this.idfScores[this.vector.getIndex(i)];
+    }
+
+    /**
+     * Returns the magnitude (Euclidean norm) of this query's TF-IDF vector.
+     */
+    public double getMagnitude() {
+        return this.vector.norm();
+    }
+}
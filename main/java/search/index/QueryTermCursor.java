@@ -0,0 +1,182 @@
+package search.index;
+
+import java.util.Arrays;
+
+/**
+ * Walks the posting list of a single query term in document order.
+ *
+ * Besides its position, each cursor knows the term's weight within the query and an
+ * upper bound on how much the term can add to a document's final score, both overall
+ * and within each block of BLOCK_SIZE consecutive postings. These bounds let dynamic
+ * pruning skip documents that cannot make it into the top results.
+ *
+ * Decoding postings one at a time is slow, so the cursor decodes up to
+ * BUFFER_SIZE postings at once, starting at its position, and reads from that
+ * buffer until it moves past it. Weights are only decoded once they are needed.
+ */
+public class QueryTermCursor {
+    /**
+     * The document reported by a cursor that has moved past the end of its postings.
+     * It compares larger than every real document.
+     */
+    public static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+
+    /**
+     * The number of postings covered by each block bound.
+     */
+    public static final int BLOCK_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 32;
+
+    private PostingList postings;
+    private double queryWeight;
+    private double[] blockUpperBounds;
+    private double boundScale;
+    private double upperBound;
+    private int position;
+
+    private double blockUpperBound;
+    private int blockLastDocument;
+
+    // The decoded postings [bufferStart, bufferEnd), and whether their weights are decoded.
+    private int[] documents;
+    private double[] weights;
+    private int bufferStart;
+    private int bufferEnd;
+    private boolean hasWeights;
+
+    /**
+     * Creates a cursor at the start of the given postings.
+     *
+     * Entry i of blockUpperBounds must bound the weight of every posting in block i,
+     * after any per-document adjustment the caller makes to scores. The bounds this
+     * cursor reports are those values times the query weight and the given scale.
+     */
+    public QueryTermCursor(PostingList postings, double queryWeight, double[] blockUpperBounds, double boundScale) {
+        this.postings = postings;
+        this.queryWeight = queryWeight;
+        this.blockUpperBounds = blockUpperBounds;
+        this.boundScale = boundScale;
+        this.position = 0;
+        this.documents = new int[BUFFER_SIZE];
+        this.weights = new double[BUFFER_SIZE];
+        this.bufferStart = 0;
+        this.bufferEnd = 0;
+
+        double maxBound = 0.0;
+        for (double bound : blockUpperBounds) {
+            maxBound = Math.max(maxBound, bound);
+        }
+        this.upperBound = queryWeight * maxBound * boundScale;
+    }
+
+    /**
+     * Returns the document at the cursor, or NO_MORE_DOCUMENTS if it is exhausted.
+     */
+    public int getDocument() {
+        if (this.position >= this.postings.size()) {
+            return NO_MORE_DOCUMENTS;
+        }
+        if (this.position >= this.bufferEnd) {
+            this.fillBuffer();
+        }
+        return this.documents[this.position - this.bufferStart];
+    }
+
+    /**
+     * Returns the product of the term's weight in the query and its weight in the
+     * document at the cursor.
+     *
+     * Precondition: the cursor is not exhausted.
+     */
+    public double getContribution() {
+        if (this.position >= this.bufferEnd) {
+            this.fillBuffer();
+        }
+        if (!this.hasWeights) {
+            this.postings.getWeights(this.bufferStart, this.bufferEnd, this.weights);
+            this.hasWeights = true;
+        }
+        return this.queryWeight * this.weights[this.position - this.bufferStart];
+    }
+
+    /**
+     * Returns an upper bound on this term's contribution to any document.
+     */
+    public double getUpperBound() {
+        return this.upperBound;
+    }
+
+    /**
+     * Finds the block containing the first posting whose document is at least the
+     * target, without moving the cursor. Its bound and last document are then
+     * available from getBlockUpperBound and getBlockLastDocument.
+     *
+     * If there is no such posting, the bound is 0 and the last document is
+     * NO_MORE_DOCUMENTS.
+     */
+    public void findBlock(int target) {
+        int found = this.seek(target);
+        if (found >= this.postings.size()) {
+            this.blockUpperBound = 0.0;
+            this.blockLastDocument = NO_MORE_DOCUMENTS;
+        } else {
+            int block = found / BLOCK_SIZE;
+            int blockLast = Math.min((block + 1) * BLOCK_SIZE, this.postings.size()) - 1;
+            this.blockUpperBound = this.queryWeight * this.blockUpperBounds[block] * this.boundScale;
+            this.blockLastDocument = blockLast >= this.bufferStart && blockLast < this.bufferEnd
+                    ? this.documents[blockLast - this.bufferStart]
+                    : this.postings.getDocument(blockLast);
+        }
+    }
+
+    /**
+     * Returns an upper bound on this term's contribution to any document in the block
+     * last found by findBlock.
+     */
+    public double getBlockUpperBound() {
+        return this.blockUpperBound;
+    }
+
+    /**
+     * Returns the last document in the block last found by findBlock.
+     */
+    public int getBlockLastDocument() {
+        return this.blockLastDocument;
+    }
+
+    /**
+     * Moves the cursor to the next posting.
+     */
+    public void next() {
+        this.position++;
+    }
+
+    /**
+     * Moves the cursor forward to the first posting whose document is at least the
+     * target. Does nothing if the cursor is already there.
+     */
+    public void advance(int target) {
+        this.position = this.seek(target);
+    }
+
+    /**
+     * Returns the position of the first posting at or after the cursor whose document
+     * is at least the target, searching the buffer if the posting lies within it.
+     */
+    private int seek(int target) {
+        if (this.position < this.bufferEnd && this.documents[this.bufferEnd - 1 - this.bufferStart] >= target) {
+            int found = Arrays.binarySearch(this.documents, this.position - this.bufferStart,
+                    this.bufferEnd - this.bufferStart, target);
+            return this.bufferStart + (found >= 0 ? found : -found - 1);
+        }
+        return this.postings.advance(this.position, target);
+    }
+
+    private void fillBuffer() {
+        this.bufferStart = this.position;
+        this.bufferEnd = Math.min(this.position + BUFFER_SIZE, this.postings.size());
+        this.postings.getDocuments(this.bufferStart, this.bufferEnd, this.documents);
+        this.hasWeights = false;
+    }
+}
@@ -0,0 +1,302 @@
+package search.index;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import search.analyzers.TfIdfAnalyzer;
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.net.URI;
+import java.util.BitSet;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * One piece of a SegmentedIndex: an InvertedIndex over some of the pages, along with
+ * the summary, outgoing links and page rank of each of them, all indexed by the
+ * segment's own document IDs.
+ *
+ * Segments are immutable. Removing a page from a segment only marks it as deleted in
+ * a copy of the segment (the page keeps its postings until the segment is merged
+ * into another), and the with methods likewise return copies that share everything
+ * they do not change. This lets queries keep reading a segment while a new version
+ * of it is being built.
+ */
+public class Segment {
+    private InvertedIndex index;
+    private WebpageSummary[] summaries;
+    private URI[][] links;
+    private double[] pageRanks;
+    private BitSet deleted;
+    private int numDeleted;
+
+    // The change count (see SegmentedIndex.getNumChanges) of the index whose IDF
+    // scores the norms were computed with.
+    private long normsVersion;
+
+    // For each term ID, the largest value of (weight * sqrt(page rank) / norm) within
+    // each block of QueryTermCursor.BLOCK_SIZE postings. SegmentedIndex maintenance
+    // computes these with prepareBlockUpperBounds before queries see the segment;
+    // otherwise they are computed the first time they are needed. Deleting documents
+    // leaves them valid (if a little loose), so withDeletion keeps them.
+    private volatile double[][] blockUpperBounds;
+
+    /**
+     * Constructs a segment with no deleted documents from its parts. Entry i of
+     * summaries, links and pageRanks belongs to the index's document with ID i.
+     */
+    public Segment(InvertedIndex index, WebpageSummary[] summaries, URI[][] links, double[] pageRanks) {
+        this(index, summaries, links, pageRanks, new BitSet(), 0, 0, null);
+    }
+
+    private Segment(InvertedIndex index, WebpageSummary[] summaries, URI[][] links, double[] pageRanks,
+                    BitSet deleted, int numDeleted, long normsVersion, double[][] blockUpperBounds) {
+        this.index = index;
+        this.summaries = summaries;
+        this.links = links;
+        this.pageRanks = pageRanks;
+        this.deleted = deleted;
+        this.numDeleted = numDeleted;
+        this.normsVersion = normsVersion;
+        this.blockUpperBounds = blockUpperBounds;
+    }
+
+    /**
+     * Indexes the given webpages as a new segment, giving each one the given page rank.
+     *
+     * The norms are computed with the IDF scores of just these pages: once the segment
+     * is part of a larger collection, they should be recomputed with withIdfScores.
+     */
+    public static Segment build(ISet<Webpage> webpages, double pageRank) {
+        InvertedIndex index = new InvertedIndex(new TfIdfAnalyzer(webpages));
+        DocumentDictionary documents = index.getDocuments();
+        WebpageSummary[] summaries = new WebpageSummary[documents.size()];
+        URI[][] links = new URI[documents.size()][];
+        double[] pageRanks = new double[documents.size()];
+        for (Webpage webpage : webpages) {
+            int document = documents.getId(webpage.getUri());
+            summaries[document] = webpage.getSummary();
+            links[document] = toArray(webpage.getLinks(), documents);
+            pageRanks[document] = pageRank;
+        }
+        return new Segment(index, summaries, links, pageRanks);
+    }
+
+    /**
+     * Returns the given list of links as an array, which takes much less memory.
+     *
+     * Links to documents in the given dictionary are replaced by the dictionary's own
+     * copy of the URI, so the many links to a popular page share one URI object, and
+     * comparing one against the dictionary's is a simple identity check.
+     */
+    public static URI[] toArray(IList<URI> links, DocumentDictionary documents) {
+        URI[] output = new URI[links.size()];
+        int i = 0;
+        for (URI link : links) {
+            int target = documents.getId(link);
+            output[i] = target >= 0 ? documents.getUri(target) : link;
+            i++;
+        }
+        return output;
+    }
+
+    /**
+     * Returns a single segment holding the live documents of all the given segments,
+     * in order, with norms computed using the given IDF score of each term, which
+     * are those of the index with the given change count.
+     */
+    public static Segment merge(Segment[] segments, ToDoubleFunction<String> idfScores, long normsVersion) {
+        InvertedIndex[] indexes = new InvertedIndex[segments.length];
+        BitSet[] deleted = new BitSet[segments.length];
+        int numLiveDocuments = 0;
+        for (int i = 0; i < segments.length; i++) {
+            indexes[i] = segments[i].index;
+            deleted[i] = segments[i].deleted;
+            numLiveDocuments += segments[i].numLiveDocuments();
+        }
+        InvertedIndex merged = InvertedIndex.merge(indexes, deleted, idfScores);
+
+        // The merged index numbers the live documents in the same order we visit them.
+        WebpageSummary[] summaries = new WebpageSummary[numLiveDocuments];
+        URI[][] links = new URI[numLiveDocuments][];
+        double[] pageRanks = new double[numLiveDocuments];
+        int next = 0;
+        for (Segment segment : segments) {
+            for (int document = 0; document < segment.size(); document++) {
+                if (!segment.isDeleted(document)) {
+                    summaries[next] = segment.summaries[document];
+                    links[next] = segment.links[document];
+                    pageRanks[next] = segment.pageRanks[document];
+                    next++;
+                }
+            }
+        }
+        return new Segment(merged, summaries, links, pageRanks, new BitSet(), 0, normsVersion, null);
+    }
+
+    /**
+     * Returns a copy of this segment with the given document marked as deleted.
+     */
+    public Segment withDeletion(int document) {
+        if (this.isDeleted(document)) {
+            return this;
+        }
+        BitSet newDeleted = (BitSet) this.deleted.clone();
+        newDeleted.set(document);
+        return new Segment(this.index, this.summaries, this.links, this.pageRanks, newDeleted, this.numDeleted + 1,
+                this.normsVersion, this.blockUpperBounds);
+    }
+
+    /**
+     * Returns a copy of this segment whose norms are computed with the given IDF
+     * scores, indexed by this segment's term IDs, which are those of the index with
+     * the given change count.
+     */
+    public Segment withIdfScores(double[] idfScores, long newNormsVersion) {
+        return new Segment(this.index.withIdfScores(idfScores), this.summaries, this.links, this.pageRanks,
+                this.deleted, this.numDeleted, newNormsVersion, null);
+    }
+
+    /**
+     * Returns a copy of this segment with the given page ranks, indexed by document ID.
+     */
+    public Segment withPageRanks(double[] newPageRanks) {
+        return new Segment(this.index, this.summaries, this.links, newPageRanks, this.deleted, this.numDeleted,
+                this.normsVersion, null);
+    }
+
+    /**
+     * Returns the change count (see SegmentedIndex.getNumChanges) of the index whose
+     * IDF scores this segment's norms were computed with.
+     */
+    public long getNormsVersion() {
+        return this.normsVersion;
+    }
+
+    /**
+     * Returns the segment's inverted index.
+     */
+    public InvertedIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the number of documents in the segment, including deleted ones.
+     */
+    public int size() {
+        return this.summaries.length;
+    }
+
+    /**
+     * Returns the number of documents in the segment that have not been deleted.
+     */
+    public int numLiveDocuments() {
+        return this.summaries.length - this.numDeleted;
+    }
+
+    /**
+     * Returns true if the document with the given ID has been deleted.
+     */
+    public boolean isDeleted(int document) {
+        return this.deleted.get(document);
+    }
+
+    /**
+     * Returns the ID of the live document with the given URI, or -1 if there is none.
+     */
+    public int getLiveDocument(URI uri) {
+        int document = this.index.getDocuments().getId(uri);
+        return document >= 0 && !this.isDeleted(document) ? document : -1;
+    }
+
+    /**
+     * Returns the summary of the document with the given ID.
+     */
+    public WebpageSummary getSummary(int document) {
+        return this.summaries[document];
+    }
+
+    /**
+     * Returns the summary of every document, indexed by document ID.
+     */
+    public WebpageSummary[] getSummaries() {
+        return this.summaries;
+    }
+
+    /**
+     * Returns the links out of every document, indexed by document ID.
+     */
+    public URI[][] getLinks() {
+        return this.links;
+    }
+
+    /**
+     * Returns a webpage holding just the URI and links of the document with the given
+     * ID, which is all PageRankAnalyzer needs.
+     */
+    public Webpage getLinkPage(int document) {
+        IList<URI> pageLinks = new DoubleLinkedList<>();
+        for (URI link : this.links[document]) {
+            pageLinks.add(link);
+        }
+        return new Webpage(this.index.getDocuments().getUri(document), pageLinks, new DoubleLinkedList<>(), "", "");
+    }
+
+    /**
+     * Returns the page rank of the document with the given ID.
+     */
+    public double getPageRank(int document) {
+        return this.pageRanks[document];
+    }
+
+    /**
+     * Returns the page rank of every document, indexed by document ID.
+     */
+    public double[] getPageRanks() {
+        return this.pageRanks;
+    }
+
+    /**
+     * Returns the block upper bounds of the term with the given ID, for use by a
+     * QueryTermCursor: entry i is the largest value of
+     * (weight * sqrt(page rank) / norm) within block i of the term's postings.
+     */
+    public double[] getBlockUpperBounds(int termId) {
+        return this.prepareBlockUpperBounds()[termId];
+    }
+
+    /**
+     * Computes the block upper bounds of every term, if they have not been already,
+     * so that the first query to need them does not have to. Returns the bounds.
+     */
+    public double[][] prepareBlockUpperBounds() {
+        double[][] upperBounds = this.blockUpperBounds;
+        if (upperBounds == null) {
+            upperBounds = this.computeBlockUpperBounds();
+            this.blockUpperBounds = upperBounds;
+        }
+        return upperBounds;
+    }
+
+    private double[][] computeBlockUpperBounds() {
+        double[] documentBounds = new double[this.size()];
+        for (int document = 0; document < documentBounds.length; document++) {
+            double norm = this.index.getDocumentNorm(document);
+            documentBounds[document] = norm > 0.0 ? Math.sqrt(this.pageRanks[document]) / norm : 0.0;
+        }
+
+        int blockSize = QueryTermCursor.BLOCK_SIZE;
+        double[][] upperBounds = new double[this.index.getTerms().size()][];
+        for (int term = 0; term < upperBounds.length; term++) {
+            PostingList postings = this.index.getPostings(term);
+            if (postings != null) {
+                upperBounds[term] = new double[(postings.size() + blockSize - 1) / blockSize];
+                for (int i = 0; i < postings.size(); i++) {
+                    double bound = postings.getWeight(i) * documentBounds[postings.getDocument(i)];
+                    upperBounds[term][i / blockSize] = Math.max(upperBounds[term][i / blockSize], bound);
+                }
+            }
+        }
+        return upperBounds;
+    }
+}
@@ -0,0 +1,341 @@
+package search.index;
+
+import datastructures.interfaces.IList;
+
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * A searchable collection made up of a list of Segments, each indexing some of the
+ * pages. New pages are added as new segments rather than by rebuilding the index,
+ * and segments are merged together later on, away from the queries.
+ *
+ * Documents are known by a global ID: their ID within their segment plus the
+ * segment's base, which is the number of documents (deleted or not) in the segments
+ * before it. Global IDs only stay the same for as long as the segments do, so they
+ * should never be kept across changes to the index.
+ *
+ * Collection statistics (the number of documents, and how many documents contain each
+ * term) are added up over all the segments, counting deleted documents until a merge
+ * drops them, so that deleting a page never touches any other page's postings. IDF
+ * scores are computed from these statistics whenever a query is prepared, so they are
+ * always current. The document norms are only as current as the IDF scores each
+ * segment was last given: recomputing them means going over all of a segment's
+ * postings, so withRefreshedNorms only does so for segments whose norms have become
+ * too stale.
+ *
+ * To tell how stale, the index counts its changes: every document added, deleted, or
+ * dropped by a merge adds one. Each segment remembers the count its norms were
+ * computed at, and the changes since then, as a fraction of the documents in the
+ * index, stand in for how far the IDF scores may have drifted.
+ *
+ * Like Segment, this class is immutable: every change returns a new SegmentedIndex
+ * sharing the segments it did not change.
+ */
+public class SegmentedIndex {
+    private Segment[] segments;
+    private int[] bases;
+    private int size;
+    private int numLiveDocuments;
+    private long numChanges;
+
+    /**
+     * Constructs an index from the given segments, in order. Their norms are taken to
+     * be current.
+     */
+    public SegmentedIndex(Segment... segments) {
+        this(0, segments);
+    }
+
+    private SegmentedIndex(long numChanges, Segment... segments) {
+        this.numChanges = numChanges;
+        this.segments = segments;
+        this.bases = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            this.bases[i] = this.size;
+            this.size += segments[i].size();
+            this.numLiveDocuments += segments[i].numLiveDocuments();
+        }
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int numSegments() {
+        return this.segments.length;
+    }
+
+    /**
+     * Returns the segment at the given position.
+     */
+    public Segment getSegment(int i) {
+        return this.segments[i];
+    }
+
+    /**
+     * Returns the global ID of the first document of the segment at the given position.
+     */
+    public int getBase(int i) {
+        return this.bases[i];
+    }
+
+    /**
+     * Returns the number of documents, including deleted ones. Every global ID is
+     * less than this.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of documents that have not been deleted.
+     */
+    public int numLiveDocuments() {
+        return this.numLiveDocuments;
+    }
+
+    /**
+     * Returns the number of documents that have been added to, deleted from or dropped
+     * by merges in this index (and the indexes it was made from) since it was created.
+     */
+    public long getNumChanges() {
+        return this.numChanges;
+    }
+
+    /**
+     * Returns the position of the segment holding the document with the given global ID.
+     */
+    public int findSegment(int document) {
+        // Bases never decrease, so we want the last segment whose base is at most the
+        // document. Empty segments share their base with the next one, and are skipped.
+        int low = 0;
+        int high = this.segments.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.bases[middle] <= document) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the global ID of the live document with the given URI, or -1 if there
+     * is none.
+     */
+    public int findDocument(URI uri) {
+        for (int i = 0; i < this.segments.length; i++) {
+            int document = this.segments[i].getLiveDocument(uri);
+            if (document >= 0) {
+                return this.bases[i] + document;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of documents containing the given word, including deleted ones.
+     */
+    public int getDocumentFrequency(String word) {
+        int frequency = 0;
+        for (Segment segment : this.segments) {
+            PostingList postings = segment.getIndex().getPostings(word);
+            if (postings != null) {
+                frequency += postings.size();
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Returns the IDF score of the given word, or 0 if no document contains it.
+     */
+    public double getIdfScore(String word) {
+        int frequency = this.getDocumentFrequency(word);
+        return frequency > 0 ? this.computeIdfScore(frequency) : 0.0;
+    }
+
+    private double computeIdfScore(int frequency) {
+        return Math.log((double) this.size / (double) frequency);
+    }
+
+    /**
+     * Returns the IDF score of every term in the given dictionary, indexed by term ID.
+     */
+    public double[] computeIdfScores(TermDictionary terms) {
+        double[] idfScores = new double[terms.size()];
+        for (int termId = 0; termId < idfScores.length; termId++) {
+            idfScores[termId] = this.getIdfScore(terms.getTerm(termId));
+        }
+        return idfScores;
+    }
+
+    /**
+     * Computes the TF-IDF vector for the given query so it can be scored against
+     * any number of documents in any of the segments.
+     *
+     * Since each segment has its own term IDs, the vector is indexed by term IDs
+     * local to the query. The PreparedQuery's getTerm and getIdfScore give the word
+     * and IDF score behind each entry, which is all we need to find its postings in
+     * each segment.
+     */
+    public PreparedQuery prepareQuery(IList<String> query) {
+        TermDictionary queryTerms = new TermDictionary();
+        double[] idfScores = new double[query.size()];
+        for (String word : query) {
+            if (queryTerms.getId(word) < 0) {
+                int frequency = this.getDocumentFrequency(word);
+                if (frequency > 0) {
+                    idfScores[queryTerms.add(word)] = this.computeIdfScore(frequency);
+                }
+            }
+        }
+        return PreparedQuery.prepare(query, queryTerms, idfScores);
+    }
+
+    /**
+     * Returns the cosine similarity between the given prepared query and the document
+     * with the given global ID.
+     */
+    public double computeRelevance(PreparedQuery query, int document) {
+        int i = this.findSegment(document);
+        InvertedIndex index = this.segments[i].getIndex();
+        int localDocument = document - this.bases[i];
+        double norm = index.getDocumentNorm(localDocument);
+        if (query.getMagnitude() == 0.0 || norm == 0.0) {
+            return 0.0;
+        }
+        SparseVector queryVector = query.getVector();
+        double dotProduct = 0.0;
+        for (int term = 0; term < queryVector.size(); term++) {
+            PostingList postings = index.getPostings(query.getTerm(term));
+            if (postings != null) {
+                int j = postings.advance(0, localDocument);
+                if (j < postings.size() && postings.getDocument(j) == localDocument) {
+                    dotProduct += queryVector.getWeight(term) * query.getIdfScore(term) * postings.getWeight(j);
+                }
+            }
+        }
+        return dotProduct / (query.getMagnitude() * norm);
+    }
+
+    /**
+     * Returns a copy of this index with the given segment added at the end. The
+     * segment's norms are recomputed with the IDF scores of the grown collection.
+     */
+    public SegmentedIndex withSegment(Segment segment) {
+        long newNumChanges = this.numChanges + segment.size();
+        Segment[] grown = Arrays.copyOf(this.segments, this.segments.length + 1);
+        grown[this.segments.length] = segment;
+        double[] idfScores = new SegmentedIndex(grown).computeIdfScores(segment.getIndex().getTerms());
+        grown[this.segments.length] = segment.withIdfScores(idfScores, newNumChanges);
+        return new SegmentedIndex(newNumChanges, grown);
+    }
+
+    /**
+     * Returns a copy of this index with the document with the given global ID deleted.
+     */
+    public SegmentedIndex withDeletion(int document) {
+        int i = this.findSegment(document);
+        Segment[] changed = this.segments.clone();
+        changed[i] = this.segments[i].withDeletion(document - this.bases[i]);
+        return new SegmentedIndex(this.numChanges + 1, changed);
+    }
+
+    /**
+     * Returns a copy of this index with the segments at positions [from, to) merged
+     * into a single segment, dropping their deleted documents.
+     *
+     * The merged segment's norms are computed with the IDF scores from before the
+     * merge, which still count the dropped documents, so they are a little stale
+     * if any were dropped.
+     */
+    public SegmentedIndex withMerged(int from, int to) {
+        Segment[] merged = new Segment[this.segments.length - (to - from) + 1];
+        System.arraycopy(this.segments, 0, merged, 0, from);
+        merged[from] = Segment.merge(Arrays.copyOfRange(this.segments, from, to), this::getIdfScore, this.numChanges);
+        System.arraycopy(this.segments, to, merged, from + 1, this.segments.length - to);
+        int numDropped = 0;
+        for (int i = from; i < to; i++) {
+            numDropped += this.segments[i].size() - this.segments[i].numLiveDocuments();
+        }
+        return new SegmentedIndex(this.numChanges + numDropped, merged);
+    }
+
+    /**
+     * Returns a copy of this index where every segment's norms are computed with the
+     * current IDF scores.
+     */
+    public SegmentedIndex withRefreshedNorms() {
+        return this.withRefreshedNorms(0.0);
+    }
+
+    /**
+     * Returns a copy of this index where the norms of every segment are computed with
+     * the current IDF scores, if the number of changes since they were last computed
+     * is more than the given fraction of the documents in the index. Returns this
+     * index itself if no segment needs it.
+     */
+    public SegmentedIndex withRefreshedNorms(double tolerance) {
+        Segment[] refreshed = this.segments.clone();
+        boolean changed = false;
+        for (int i = 0; i < refreshed.length; i++) {
+            if (this.numChanges - this.segments[i].getNormsVersion() > tolerance * this.size) {
+                double[] idfScores = this.computeIdfScores(this.segments[i].getIndex().getTerms());
+                refreshed[i] = this.segments[i].withIdfScores(idfScores, this.numChanges);
+                changed = true;
+            }
+        }
+        return changed ? new SegmentedIndex(this.numChanges, refreshed) : this;
+    }
+
+    /**
+     * Computes the block upper bounds of every segment that does not have them yet
+     * (see Segment.prepareBlockUpperBounds), so queries never have to.
+     */
+    public void prepareBlockUpperBounds() {
+        for (Segment segment : this.segments) {
+            segment.prepareBlockUpperBounds();
+        }
+    }
+
+    /**
+     * Returns a copy of this index with the segment at the given position replaced.
+     */
+    public SegmentedIndex withSegmentReplaced(int i, Segment segment) {
+        Segment[] changed = this.segments.clone();
+        changed[i] = segment;
+        return new SegmentedIndex(this.numChanges, changed);
+    }
+
+    /**
+     * If this index is the given earlier version of the index with more segments
+     * added at the end, returns the given replacement for that earlier version with
+     * the same segments added. Otherwise, returns null.
+     *
+     * This is how a change computed from a snapshot of the index in the background
+     * is applied without losing the pages added in the meantime. If the replacement
+     * is the earlier version itself, there is nothing to apply, and this index is
+     * returned as it is.
+     */
+    public SegmentedIndex rebase(SegmentedIndex earlier, SegmentedIndex replacement) {
+        if (replacement == earlier) {
+            return this;
+        }
+        if (earlier.segments.length > this.segments.length) {
+            return null;
+        }
+        for (int i = 0; i < earlier.segments.length; i++) {
+            if (earlier.segments[i] != this.segments[i]) {
+                return null;
+            }
+        }
+        SegmentedIndex output = replacement;
+        for (int i = earlier.segments.length; i < this.segments.length; i++) {
+            output = output.withSegment(this.segments[i]);
+        }
+        return output;
+    }
+}
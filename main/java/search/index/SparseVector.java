@@ -0,0 +1,121 @@
+package search.index;
+
+/**
+ * Represents a sparse vector: a vector where only a handful of the entries are
+ * non-zero. Only the non-zero entries are stored, as a sorted array of their indices
+ * along with a parallel array of their weights.
+ *
+ * This class is immutable, so it computes its norm once up front.
+ */
+public class SparseVector {
+    private int[] indices;
+    private double[] weights;
+    private double norm;
+
+    /**
+     * Constructs a new sparse vector.
+     *
+     * The vector takes ownership of both arrays: the caller must not modify them
+     * afterwards.
+     *
+     * @throws IllegalArgumentException  if the arrays have different lengths or if
+     *                                   the indices are not strictly increasing
+     */
+    public SparseVector(int[] indices, double[] weights) {
+        if (indices.length != weights.length) {
+            throw new IllegalArgumentException("Indices and weights must have the same length");
+        }
+        double sumOfSquares = 0.0;
+        for (int i = 0; i < indices.length; i++) {
+            if (i > 0 && indices[i] <= indices[i - 1]) {
+                throw new IllegalArgumentException("Indices must be strictly increasing");
+            }
+            sumOfSquares += weights[i] * weights[i];
+        }
+        this.indices = indices;
+        this.weights = weights;
+        this.norm = Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * Returns the number of non-zero entries in this vector.
+     */
+    public int size() {
+        return this.indices.length;
+    }
+
+    /**
+     * Returns the index of the i-th non-zero entry.
+     */
+    public int getIndex(int i) {
+        return this.indices[i];
+    }
+
+    /**
+     * Returns the weight of the i-th non-zero entry.
+     */
+    public double getWeight(int i) {
+        return this.weights[i];
+    }
+
+    /**
+     * Returns the Euclidean norm (magnitude) of this vector.
+     */
+    public double norm() {
+        return this.norm;
+    }
+
+    /**
+     * Returns a new vector where each entry is this vector's entry multiplied by the
+     * factor with the same index in the given array.
+     */
+    public SparseVector scale(double[] factors) {
+        double[] scaled = new double[this.weights.length];
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = this.weights[i] * factors[this.indices[i]];
+        }
+        return new SparseVector(this.indices, scaled);
+    }
+
+    /**
+     * Returns the dot product of this vector and the other one.
+     *
+     * Since both vectors are sorted by index, we can find the entries they have in
+     * common by walking through the two in lockstep, in the same way we would merge
+     * two sorted lists.
+     */
+    public double dot(SparseVector other) {
+        int[] otherIndices = other.indices;
+        double[] otherWeights = other.weights;
+        double output = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < this.indices.length && j < otherIndices.length) {
+            int a = this.indices[i];
+            int b = otherIndices[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                output += this.weights[i] * otherWeights[j];
+                i++;
+                j++;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the cosine similarity between this vector and the other one, or
+     * zero if either vector has no magnitude.
+     */
+    public double cosineSimilarity(SparseVector other) {
+        double denominator = this.norm * other.norm;
+        if (denominator != 0.0) {
+            return this.dot(other) / denominator;
+        } else {
+            return 0.0;
+        }
+    }
+}
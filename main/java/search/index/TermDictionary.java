@@ -0,0 +1,36 @@
+package search.index;
+
+/**
+ * Assigns every distinct word in the corpus a dense integer term ID and translates
+ * between a word and its ID.
+ *
+ * IDs are handed out in the order words are first added, starting from 0, so they
+ * can be used directly as indices into arrays of per-term data. The dictionary
+ * keeps a single copy of each word, so anything storing term IDs rather than
+ * strings avoids holding on to a separate copy of the word for every document.
+ */
+public class TermDictionary extends IdDictionary<String> {
+    /**
+     * Returns the ID of the given word, assigning it the next available ID if it
+     * has not been added before.
+     */
+    public int add(String term) {
+        return this.addKey(term);
+    }
+
+    /**
+     * Returns the ID of the given word, or -1 if the word was never added.
+     */
+    public int getId(String term) {
+        return this.getKeyId(term);
+    }
+
+    /**
+     * Returns the word with the given ID.
+     *
+     * @throws IndexOutOfBoundsException  if id < 0 or id >= this.size()
+     */
+    public String getTerm(int id) {
+        return this.getKey(id);
+    }
+}
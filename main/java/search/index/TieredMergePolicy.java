@@ -0,0 +1,84 @@
+package search.index;
+
+/**
+ * Decides which segments of a SegmentedIndex to merge, in the style of a log-structured
+ * merge tree: segments are grouped into tiers by size, and once mergeFactor neighbouring
+ * segments sit in the same tier, they are merged into one segment of the next tier up.
+ *
+ * A segment with n live documents is in tier floor(log(n) / log(mergeFactor)), so with a
+ * merge factor of 10, pages added one at a time are merged ten at a time into segments
+ * of about 10 pages, those into segments of about 100 pages, and so on. Every page is
+ * therefore rewritten only about once per tier, which keeps writes cheap, while the
+ * number of segments a query has to search stays small. In particular, the large
+ * segment built when the engine starts up sits in a high tier of its own, and is
+ * never rewritten just because a few pages were added after it.
+ *
+ * Only neighbouring segments are ever merged, since global document IDs depend on
+ * the order of the segments. Segments whose deleted documents make up more than
+ * maxDeletedRatio of them are also rewritten on their own, so the space and the
+ * statistics taken up by deleted pages are eventually reclaimed.
+ */
+public class TieredMergePolicy {
+    private int mergeFactor;
+    private double maxDeletedRatio;
+
+    /**
+     * @throws IllegalArgumentException  if mergeFactor < 2 or maxDeletedRatio is not in [0, 1]
+     */
+    public TieredMergePolicy(int mergeFactor, double maxDeletedRatio) {
+        if (mergeFactor < 2 || !(maxDeletedRatio >= 0.0 && maxDeletedRatio <= 1.0)) {
+            throw new IllegalArgumentException();
+        }
+        this.mergeFactor = mergeFactor;
+        this.maxDeletedRatio = maxDeletedRatio;
+    }
+
+    /**
+     * Returns the next merge to make in the given index as an array {from, to}, meaning
+     * the segments at positions [from, to) should be merged, or null if the index needs
+     * no merging.
+     *
+     * Merges in the lowest tier come first, since they are the cheapest, and a merge may
+     * fill up the tier above: callers should keep asking until this returns null.
+     */
+    public int[] findMerge(SegmentedIndex index) {
+        int[] best = null;
+        int bestTier = Integer.MAX_VALUE;
+        int runStart = 0;
+        for (int i = 1; i <= index.numSegments(); i++) {
+            int tier = this.getTier(index.getSegment(runStart));
+            if (i == index.numSegments() || this.getTier(index.getSegment(i)) != tier) {
+                if (i - runStart >= this.mergeFactor && tier < bestTier) {
+                    best = new int[] {runStart, runStart + this.mergeFactor};
+                    bestTier = tier;
+                }
+                runStart = i;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            int numDeleted = segment.size() - segment.numLiveDocuments();
+            if (numDeleted > 0 && numDeleted > this.maxDeletedRatio * segment.size()) {
+                return new int[] {i, i + 1};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the tier of the given segment, based on its number of live documents.
+     */
+    public int getTier(Segment segment) {
+        int tier = 0;
+        long bound = this.mergeFactor;
+        while (segment.numLiveDocuments() >= bound) {
+            tier++;
+            bound *= this.mergeFactor;
+        }
+        return tier;
+    }
+}
@@ -0,0 +1,174 @@
+package search.index;
+
+import misc.exceptions.EmptyContainerException;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the k highest scoring documents seen so far.
+ *
+ * This is a 4-heap like ArrayHeap, except that it is specialized for (document, score)
+ * pairs: documents and scores live in two parallel primitive arrays, so offering a
+ * document allocates nothing. The smallest kept score is always at the root, so a new
+ * document only needs to be compared against it to decide whether to keep it.
+ */
+public class TopKHeap {
+    private static final int NUM_CHILDREN = 4;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int k;
+    private int[] documents;
+    private double[] scores;
+    private int size;
+
+    /**
+     * @throws IllegalArgumentException  if k < 0
+     */
+    public TopKHeap(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.k = k;
+        this.documents = new int[Math.min(k, DEFAULT_CAPACITY)];
+        this.scores = new double[this.documents.length];
+        this.size = 0;
+    }
+
+    /**
+     * Offers the given document to the heap. If the heap already holds k documents,
+     * the document replaces the lowest scoring one only if its own score is higher.
+     *
+     * Returns true if the document was kept.
+     */
+    public boolean offer(int document, double score) {
+        if (this.size < this.k) {
+            if (this.size == this.documents.length) {
+                int capacity = (int) Math.min(this.k, this.size * 2L);
+                this.documents = Arrays.copyOf(this.documents, capacity);
+                this.scores = Arrays.copyOf(this.scores, capacity);
+            }
+            this.size++;
+            this.percolateUp(this.size - 1, document, score);
+            return true;
+        } else if (this.size > 0 && score > this.scores[0]) {
+            this.percolateDown(0, document, score);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Offers every document kept by the other heap to this one.
+     */
+    public void offerAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            this.offer(other.documents[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Returns the number of documents currently kept, which is never more than k.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if the heap holds no documents.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns true if the heap holds k documents, so further documents must beat
+     * the lowest kept score to be kept.
+     */
+    public boolean isFull() {
+        return this.size == this.k;
+    }
+
+    /**
+     * Returns the lowest score currently kept.
+     *
+     * @throws EmptyContainerException  if the heap is empty
+     */
+    public double peekMinScore() {
+        if (this.size == 0) {
+            throw new EmptyContainerException();
+        }
+        return this.scores[0];
+    }
+
+    /**
+     * Returns the document with the lowest score currently kept.
+     *
+     * @throws EmptyContainerException  if the heap is empty
+     */
+    public int peekMinDocument() {
+        if (this.size == 0) {
+            throw new EmptyContainerException();
+        }
+        return this.documents[0];
+    }
+
+    /**
+     * Removes the document with the lowest score and returns it.
+     *
+     * @throws EmptyContainerException  if the heap is empty
+     */
+    public int removeMin() {
+        int document = this.peekMinDocument();
+        this.size--;
+        if (this.size > 0) {
+            this.percolateDown(0, this.documents[this.size], this.scores[this.size]);
+        }
+        return document;
+    }
+
+    /**
+     * Places the given entry at the given slot, then moves it up until its parent's
+     * score is no larger than its own.
+     */
+    private void percolateUp(int slot, int document, double score) {
+        while (slot > 0) {
+            int parent = (slot - 1) / NUM_CHILDREN;
+            if (this.scores[parent] <= score) {
+                break;
+            }
+            this.documents[slot] = this.documents[parent];
+            this.scores[slot] = this.scores[parent];
+            slot = parent;
+        }
+        this.documents[slot] = document;
+        this.scores[slot] = score;
+    }
+
+    /**
+     * Places the given entry at the given slot, then moves it down until none of its
+     * children has a smaller score.
+     */
+    private void percolateDown(int slot, int document, double score) {
+        while (true) {
+            int firstChild = slot * NUM_CHILDREN + 1;
+            if (firstChild >= this.size) {
+                break;
+            }
+            int smallest = firstChild;
+            int lastChild = Math.min(firstChild + NUM_CHILDREN, this.size);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (this.scores[child] < this.scores[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (this.scores[smallest] >= score) {
+                break;
+            }
+            this.documents[slot] = this.documents[smallest];
+            this.scores[slot] = this.scores[smallest];
+            slot = smallest;
+        }
+        this.documents[slot] = document;
+        this.scores[slot] = score;
+    }
+}
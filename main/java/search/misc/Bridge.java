@@ -1,6 +1,6 @@
 package search.misc;
 
-import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.OpenHashSet;
 import datastructures.concrete.DoubleLinkedList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
@@ -50,15 +50,13 @@ public class Bridge {
 
         @Override
         public BinaryOperator<IList<T>> combiner() {
+            // Each partial list belongs to this collection alone, so we can append the
+            // second onto the first rather than copying both.
             return (a, b) -> {
-                IList<T> out = new DoubleLinkedList<>();
-                for (T i : a) {
-                    out.add(i);
-                }
                 for (T i : b) {
-                    out.add(i);
+                    a.add(i);
                 }
-                return out;
+                return a;
             };
         }
 
@@ -76,7 +74,7 @@ public class Bridge {
     public static class ISetCollector<T> implements Collector<T, ISet<T>, ISet<T>> {
         @Override
         public Supplier<ISet<T>> supplier() {
-            return ChainedHashSet::new;
+            return OpenHashSet::new;
         }
 
         @Override
@@ -86,15 +84,15 @@ public class Bridge {
 
         @Override
         public BinaryOperator<ISet<T>> combiner() {
+            // Each partial set belongs to this collection alone, so we can add the
+            // smaller set's items to the larger set rather than copying both.
             return (a, b) -> {
-                ISet<T> out = new ChainedHashSet<>();
-                for (T i : a) {
-                    out.add(i);
-                }
-                for (T i : b) {
-                    out.add(i);
+                ISet<T> larger = a.size() >= b.size() ? a : b;
+                ISet<T> smaller = larger == a ? b : a;
+                for (T i : smaller) {
+                    larger.add(i);
                 }
-                return out;
+                return larger;
             };
         }
 
@@ -105,7 +103,7 @@ public class Bridge {
 
         @Override
         public Set<Characteristics> characteristics() {
-            return EnumSet.of(Characteristics.IDENTITY_FINISH);
+            return EnumSet.of(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED);
         }
     }
 }
@@ -0,0 +1,70 @@
+package search.misc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes non-negative integers using a variable number of bytes.
+ *
+ * Each byte holds seven bits of the value, least significant first, and its high bit
+ * is set if more bytes follow. Values below 128 take a single byte, which makes this
+ * a good fit for IDs and lengths, since most of them are small.
+ */
+public class Varints {
+    private Varints() {
+    }
+
+    /**
+     * Writes the given value to the stream.
+     *
+     * @throws IllegalArgumentException  if the value is negative
+     */
+    public static void writeInt(OutputStream out, int value) throws IOException {
+        writeLong(out, value);
+    }
+
+    /**
+     * Writes the given value to the stream.
+     *
+     * @throws IllegalArgumentException  if the value is negative
+     */
+    public static void writeLong(OutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value " + value);
+        }
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads a value written by writeInt from the buffer's current position.
+     */
+    public static int readInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a value written by writeLong from the buffer's current position.
+     */
+    public static long readLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package search.models;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.dictionaries.OpenHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import search.misc.Varints;
+import search.misc.exceptions.DataExtractionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A cache of already-parsed webpages, so we only need to run the (slow) HTML parser
+ * on pages that are new or have changed since the last run.
+ *
+ * The cache is stored in a few large binary "segment" files in the data folder, which
+ * we memory-map and decode in one pass. Each segment is self-contained:
+ *
+ * - A header: the magic number and the format version, as 4-byte integers.
+ * - A string table: the number of strings, then each string as its length in bytes
+ *   followed by its UTF-8 encoding. Every word, link, URI, title and blurb is
+ *   stored here exactly once per segment.
+ * - The pages: the number of pages, then for each page the string IDs of its source
+ *   file, URI, title and blurb, the source file's modification time, and its words
+ *   and links as a count followed by string IDs.
+ *
+ * All counts, lengths, IDs and times are written as varints.
+ */
+public class WebpageCache {
+    private static final int MAGIC = 0x50475347;
+    private static final int VERSION = 1;
+
+    // We start a new segment once a segment's pages take up this many bytes, which
+    // keeps each segment well within what a single memory mapping can cover.
+    private static final int MAX_SEGMENT_BYTES = 256 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "pages-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    // Maps each cached page's source file name to the cached page.
+    private IDictionary<String, CachedPage> pages;
+
+    private WebpageCache(IDictionary<String, CachedPage> pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Reads every segment stored in the given folder. If the segments are missing or
+     * unreadable, returns an empty cache.
+     */
+    public static WebpageCache open(Path folder) {
+        IDictionary<String, CachedPage> pages = new OpenHashDictionary<>();
+        try {
+            for (int segment = 0; Files.exists(segmentPath(folder, segment)); segment++) {
+                readSegment(segmentPath(folder, segment), pages);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // A damaged or outdated cache is not an error: we just parse every page again.
+            return new WebpageCache(new OpenHashDictionary<>());
+        }
+        return new WebpageCache(pages);
+    }
+
+    /**
+     * Returns the cached page parsed from the given source file, or null if that file
+     * is not cached or has been modified since it was cached.
+     */
+    public Webpage get(String source, long lastModified) {
+        CachedPage cached = this.pages.getOrDefault(source, null);
+        if (cached == null || cached.lastModified != lastModified) {
+            return null;
+        }
+        return cached.page;
+    }
+
+    /**
+     * Returns the number of pages in the cache.
+     */
+    public int size() {
+        return this.pages.size();
+    }
+
+    /**
+     * Replaces the segments in the given folder with ones containing the given pages.
+     * The i-th page must have been parsed from the i-th source file, whose modification
+     * time is lastModified[i].
+     */
+    public static void write(Path folder, String[] sources, long[] lastModified, Webpage[] pages) {
+        try {
+            int segment = 0;
+            int start = 0;
+            while (start < pages.length) {
+                SegmentWriter writer = new SegmentWriter();
+                int end = start;
+                while (end < pages.length && writer.size() < MAX_SEGMENT_BYTES) {
+                    writer.add(sources[end], lastModified[end], pages[end]);
+                    end++;
+                }
+                writer.writeTo(segmentPath(folder, segment));
+                segment++;
+                start = end;
+            }
+            // Remove any leftover segments from a larger cache.
+            while (Files.deleteIfExists(segmentPath(folder, segment))) {
+                segment++;
+            }
+        } catch (IOException ex) {
+            throw new DataExtractionException("Could not write page cache", ex);
+        }
+    }
+
+    private static Path segmentPath(Path folder, int segment) {
+        return folder.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static void readSegment(Path path, IDictionary<String, CachedPage> pages) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException("Unrecognized page cache segment " + path);
+        }
+
+        String[] strings = new String[Varints.readInt(in)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[Varints.readInt(in)];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Links are usually shared by many pages, so we only parse each one once.
+        URI[] uris = new URI[strings.length];
+
+        int numPages = Varints.readInt(in);
+        for (int i = 0; i < numPages; i++) {
+            String source = strings[Varints.readInt(in)];
+            URI pageUri = toUri(strings, uris, Varints.readInt(in));
+            String title = strings[Varints.readInt(in)];
+            String blurb = strings[Varints.readInt(in)];
+            long lastModified = Varints.readLong(in);
+
+            IList<String> words = new DoubleLinkedList<>();
+            for (int numWords = Varints.readInt(in); numWords > 0; numWords--) {
+                words.add(strings[Varints.readInt(in)]);
+            }
+            IList<URI> links = new DoubleLinkedList<>();
+            for (int numLinks = Varints.readInt(in); numLinks > 0; numLinks--) {
+                links.add(toUri(strings, uris, Varints.readInt(in)));
+            }
+
+            pages.put(source, new CachedPage(new Webpage(pageUri, links, words, title, blurb), lastModified));
+        }
+    }
+
+    private static URI toUri(String[] strings, URI[] uris, int id) {
+        if (uris[id] == null) {
+            uris[id] = URI.create(strings[id]);
+        }
+        return uris[id];
+    }
+
+    private static class CachedPage {
+        private Webpage page;
+        private long lastModified;
+
+        public CachedPage(Webpage page, long lastModified) {
+            this.page = page;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Builds a single segment in memory. The string table can only be written once we
+     * have seen every page, so we buffer the pages' bytes until writeTo is called.
+     */
+    private static class SegmentWriter {
+        private IDictionary<String, Integer> stringIds;
+        private ByteArrayOutputStream strings;
+        private ByteArrayOutputStream pages;
+        private int numPages;
+
+        public SegmentWriter() {
+            this.stringIds = new OpenHashDictionary<>();
+            this.strings = new ByteArrayOutputStream();
+            this.pages = new ByteArrayOutputStream();
+            this.numPages = 0;
+        }
+
+        /**
+         * Returns the number of bytes added to the segment so far.
+         */
+        public int size() {
+            return this.strings.size() + this.pages.size();
+        }
+
+        public void add(String source, long lastModified, Webpage page) throws IOException {
+            WebpageSummary summary = page.getSummary();
+            this.writeString(source);
+            this.writeString(page.getUri().toString());
+            this.writeString(summary.getTitle());
+            this.writeString(summary.getBlurb());
+            Varints.writeLong(this.pages, lastModified);
+
+            Varints.writeInt(this.pages, page.getWords().size());
+            for (String word : page.getWords()) {
+                this.writeString(word);
+            }
+            Varints.writeInt(this.pages, page.getLinks().size());
+            for (URI link : page.getLinks()) {
+                this.writeString(link.toString());
+            }
+            this.numPages++;
+        }
+
+        /**
+         * Writes the ID of the given string to the page data, adding the string to the
+         * string table if we have not seen it before.
+         */
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                string = "";
+            }
+            Integer id = this.stringIds.getOrDefault(string, null);
+            if (id == null) {
+                id = this.stringIds.size();
+                this.stringIds.put(string, id);
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                Varints.writeInt(this.strings, bytes.length);
+                this.strings.write(bytes);
+            }
+            Varints.writeInt(this.pages, id);
+        }
+
+        /**
+         * Writes the segment to the given path. We write to a temporary file first and
+         * then move it into place, so a crash never leaves a half-written segment.
+         */
+        public void writeTo(Path path) throws IOException {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+                out.write(header.array());
+                Varints.writeInt(out, this.stringIds.size());
+                this.strings.writeTo(out);
+                Varints.writeInt(out, this.numPages);
+                this.pages.writeTo(out);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
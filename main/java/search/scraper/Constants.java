@@ -1,13 +1,13 @@
 package search.scraper;
 
 import com.google.re2j.Pattern;
-import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.OpenHashSet;
 import datastructures.interfaces.ISet;
 import org.apache.http.entity.ContentType;
 
 public class Constants {
     public static ISet<String> contentTypeWhitelist() {
-        ISet<String> whitelist = new ChainedHashSet<>();
+        ISet<String> whitelist = new OpenHashSet<>();
         //whitelist.add(ContentType.APPLICATION_ATOM_XML.getMimeType());
         whitelist.add(ContentType.APPLICATION_XHTML_XML.getMimeType());
         //whitelist.add(ContentType.APPLICATION_XML.getMimeType());
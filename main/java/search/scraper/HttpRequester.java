@@ -1,6 +1,6 @@
 package search.scraper;
 
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.OpenHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
 import org.apache.commons.codec.Charsets;
@@ -47,7 +47,7 @@ public class HttpRequester implements AutoCloseable {
         this.userAgent = userAgent;
         this.delayMilliseconds = delayMilliseconds;
         this.lastRequestTimestamp = 0L;
-        this.matchPattern = new ChainedHashDictionary<>();
+        this.matchPattern = new OpenHashDictionary<>();
 
         // HTTP config
         this.client = HttpClients.custom()
@@ -1,7 +1,7 @@
 package search.scraper;
 
 import datastructures.concrete.ArrayHeap;
-import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.OpenHashSet;
 import datastructures.interfaces.IPriorityQueue;
 import datastructures.interfaces.ISet;
 import search.misc.WebUtils;
@@ -25,9 +25,9 @@ public class Scraper {
     public Scraper(Path outputPath) {
         this.outputPath = outputPath;
         this.pendingUris = new ArrayHeap<>();
-        this.domainWhitelist = new ChainedHashSet<>();
+        this.domainWhitelist = new OpenHashSet<>();
         this.requester = new HttpRequester();
-        this.alreadyEncountered = new ChainedHashSet<>();
+        this.alreadyEncountered = new OpenHashSet<>();
     }
 
     public Scraper addSeedUri(URI uri) {
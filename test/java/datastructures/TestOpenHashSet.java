@@ -0,0 +1,10 @@
+package datastructures;
+
+import datastructures.concrete.OpenHashSet;
+import datastructures.interfaces.ISet;
+
+public class TestOpenHashSet extends TestChainedHashSet {
+    protected <T> ISet<T> makeInstance() {
+        return new OpenHashSet<>();
+    }
+}
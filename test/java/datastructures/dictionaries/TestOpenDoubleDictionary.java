@@ -0,0 +1,127 @@
+package datastructures.dictionaries;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.OpenDoubleDictionary;
+import misc.BaseTest;
+import misc.exceptions.NoSuchKeyException;
+import org.junit.Test;
+
+public class TestOpenDoubleDictionary extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    @Test(timeout=SECOND)
+    public void testPutGetAndUpdate() {
+        OpenDoubleDictionary<String> dict = new OpenDoubleDictionary<>();
+        dict.putDouble("a", 1.5);
+        dict.put("b", 2.5);
+        dict.putDouble("a", 3.0);
+
+        assertEquals(2, dict.size());
+        assertEquals(3.0, dict.getDouble("a"), DELTA);
+        assertEquals(2.5, dict.get("b"), DELTA);
+        assertEquals(-1.0, dict.getDoubleOrDefault("c", -1.0), DELTA);
+        assertFalse(dict.containsKey("c"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddTo() {
+        OpenDoubleDictionary<String> dict = new OpenDoubleDictionary<>();
+        assertEquals(0.25, dict.addTo("a", 0.25), DELTA);
+        assertEquals(0.75, dict.addTo("a", 0.5), DELTA);
+        assertEquals(1, dict.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddToAfterRemoveStartsAtZero() {
+        OpenDoubleDictionary<Wrapper<Integer>> dict = new OpenDoubleDictionary<>();
+        for (int i = 0; i < 10; i++) {
+            dict.addTo(new Wrapper<>(i, 1), 5.0);
+        }
+        for (int i = 0; i < 10; i++) {
+            dict.remove(new Wrapper<>(i, 1));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1.0, dict.addTo(new Wrapper<>(i + 10, 1), 1.0), DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testPutNullValue() {
+        OpenDoubleDictionary<String> dict = new OpenDoubleDictionary<>();
+        dict.put("a", null);
+    }
+
+    @Test(timeout=SECOND)
+    public void testNullKey() {
+        OpenDoubleDictionary<String> dict = new OpenDoubleDictionary<>();
+        dict.putDouble(null, 4.0);
+        assertTrue(dict.containsKey(null));
+        assertEquals(4.0, dict.remove(null), DELTA);
+        assertFalse(dict.containsKey(null));
+        assertTrue(dict.isEmpty());
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingKeyThrows() {
+        OpenDoubleDictionary<String> dict = new OpenDoubleDictionary<>();
+        try {
+            dict.getDouble("missing");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // All ok -- fall through
+        }
+        try {
+            dict.remove("missing");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // All ok -- fall through
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveWithCollidingKeys() {
+        OpenDoubleDictionary<Wrapper<Integer>> dict = new OpenDoubleDictionary<>();
+        for (int i = 0; i < 100; i++) {
+            dict.putDouble(new Wrapper<>(i, i % 3), i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals((double) i, dict.remove(new Wrapper<>(i, i % 3)), DELTA);
+        }
+        assertEquals(50, dict.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 1, dict.containsKey(new Wrapper<>(i, i % 3)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testIterator() {
+        OpenDoubleDictionary<Integer> dict = new OpenDoubleDictionary<>();
+        for (int i = 0; i < 50; i++) {
+            dict.putDouble(i, i * 2.0);
+        }
+        int count = 0;
+        for (KVPair<Integer, Double> pair : dict) {
+            assertEquals(pair.getKey() * 2.0, pair.getValue(), DELTA);
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void stressTest() {
+        int limit = 1000000;
+        OpenDoubleDictionary<Integer> dict = new OpenDoubleDictionary<>();
+        for (int i = 0; i < limit; i++) {
+            dict.putDouble(i, i);
+        }
+        for (int i = 0; i < limit; i++) {
+            assertEquals((double) i, dict.getDouble(i), DELTA);
+            dict.remove(i);
+        }
+        assertTrue(dict.isEmpty());
+    }
+}
@@ -0,0 +1,122 @@
+package datastructures.dictionaries;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.dictionaries.OpenHashDictionary;
+import datastructures.interfaces.IDictionary;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TestOpenHashDictionary extends TestDictionary {
+    protected <K, V> IDictionary<K, V> newDictionary() {
+        return new OpenHashDictionary<>();
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveFromMiddleOfRun() {
+        // Every key has the same home slot, so they form a single run, and removing
+        // one must shift the rest of the run back for them to stay reachable.
+        IDictionary<Wrapper<String>, Integer> dict = this.newDictionary();
+        for (int i = 0; i < 20; i++) {
+            dict.put(new Wrapper<>("" + i, 7), i);
+        }
+        for (int i = 0; i < 20; i += 2) {
+            assertEquals(i, dict.remove(new Wrapper<>("" + i, 7)));
+        }
+
+        assertEquals(10, dict.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 2 == 1, dict.containsKey(new Wrapper<>("" + i, 7)));
+        }
+        for (int i = 1; i < 20; i += 2) {
+            assertEquals(i, dict.get(new Wrapper<>("" + i, 7)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveFromInterleavedRuns() {
+        // Keys with two different hashcodes end up mixed together in one run. Only the
+        // entries that may legally move should be shifted into a gap.
+        IDictionary<Wrapper<String>, Integer> dict = this.newDictionary();
+        for (int i = 0; i < 30; i++) {
+            dict.put(new Wrapper<>("" + i, i % 2), i);
+        }
+        for (int i = 0; i < 30; i += 3) {
+            dict.remove(new Wrapper<>("" + i, i % 2));
+        }
+
+        assertEquals(20, dict.size());
+        for (int i = 0; i < 30; i++) {
+            Wrapper<String> key = new Wrapper<>("" + i, i % 2);
+            if (i % 3 == 0) {
+                assertFalse(dict.containsKey(key));
+            } else {
+                assertEquals(i, dict.get(key));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPutIfAbsent() {
+        OpenHashDictionary<String, Integer> dict = new OpenHashDictionary<>();
+        assertNull(dict.putIfAbsent("a", 1));
+        assertNull(dict.putIfAbsent(null, 2));
+        assertEquals(1, dict.putIfAbsent("a", 3));
+        assertEquals(2, dict.putIfAbsent(null, 4));
+        assertEquals(2, dict.size());
+        assertEquals(1, dict.get("a"));
+
+        // Inserting must still work when it makes the table resize.
+        for (int i = 0; i < 1000; i++) {
+            assertNull(dict.putIfAbsent("key" + i, i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dict.putIfAbsent("key" + i, -1));
+        }
+        assertEquals(1002, dict.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveThenPutReusesSlots() {
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 50; i++) {
+                dict.put(i, round);
+            }
+            for (int i = 0; i < 50; i++) {
+                assertEquals(round, dict.remove(i));
+            }
+            assertTrue(dict.isEmpty());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRandomOperationsMatchHashMap() {
+        // A small range of keys keeps the table busy with long runs that wrap around
+        // the end of the arrays, which is where backward shifting is easiest to get wrong.
+        Random random = new Random(12);
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextBoolean()) {
+                dict.put(key, i);
+                expected.put(key, i);
+            } else if (expected.containsKey(key)) {
+                assertEquals(expected.remove(key), dict.remove(key));
+            } else {
+                assertFalse(dict.containsKey(key));
+            }
+        }
+
+        assertEquals(expected.size(), dict.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), dict.get(entry.getKey()));
+        }
+    }
+}
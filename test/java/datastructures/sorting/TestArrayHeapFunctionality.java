@@ -186,4 +186,37 @@ public class TestArrayHeapFunctionality extends BaseTest {
     		assertEquals(i, alternatingHeap.removeMin());
     	}
     }
+    
+    @Test(timeout=SECOND)
+    public void testReplaceMin() {
+    	IPriorityQueue<Integer> heap = this.makeBasicHeap();
+    	
+    	assertEquals(1, heap.replaceMin(6));
+    	assertEquals(5, heap.size());
+    	assertEquals(2, heap.replaceMin(0));
+    	for (int i : new int[] {0, 3, 4, 5, 6}) {
+    		assertEquals(i, heap.removeMin());
+    	}
+    	assertTrue(heap.isEmpty());
+    }
+    
+    @Test(timeout=SECOND)
+    public void testReplaceMinErrorHandling() {
+    	IPriorityQueue<Integer> heap = this.makeInstance();
+    	try {
+    		heap.replaceMin(1);
+    		fail("Expected EmptyContainerException");
+    	} catch (EmptyContainerException ex) {
+    		// Do nothing: this is ok
+    	}
+    	
+    	heap.insert(1);
+    	try {
+    		heap.replaceMin(null);
+    		fail("Expected IllegalArgumentException");
+    	} catch (IllegalArgumentException ex) {
+    		// Do nothing: this is ok
+    	}
+    	assertEquals(1, heap.peekMin());
+    }
 }
@@ -11,6 +11,7 @@ import datastructures.interfaces.IList;
 import misc.Searcher;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -187,4 +188,23 @@ public class TestTopKSortFunctionality extends BaseTest {
     		}
     	}
     }
+    
+    @Test(timeout=SECOND)
+    public void testCollectorRejectsLosers() {
+    	Searcher.TopKCollector<Integer> collector = new Searcher.TopKCollector<>(3);
+    	assertTrue(collector.offer(5));
+    	assertTrue(collector.offer(1));
+    	assertTrue(collector.offer(3));
+    	assertFalse(collector.offer(0));
+    	assertFalse(collector.offer(1));
+    	assertTrue(collector.offer(4));
+    	assertEquals(3, collector.size());
+    	
+    	IList<Integer> top = collector.removeAllSorted();
+    	assertEquals(3, top.size());
+    	assertEquals(3, top.get(0));
+    	assertEquals(4, top.get(1));
+    	assertEquals(5, top.get(2));
+    	assertEquals(0, collector.size());
+    }
 }
@@ -0,0 +1,35 @@
+package search;
+
+import static org.junit.Assert.assertTrue;
+
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.Bridge;
+
+import java.util.stream.IntStream;
+
+public class TestBridge extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testParallelSetCollection() {
+        ISet<Integer> set = IntStream.range(0, 10000).parallel().boxed().collect(Bridge.toISet());
+
+        assertEquals(10000, set.size());
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(set.contains(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testParallelListCollectionKeepsOrder() {
+        IList<Integer> list = IntStream.range(0, 10000).parallel().boxed().collect(Bridge.toIList());
+
+        assertEquals(10000, list.size());
+        int expected = 0;
+        for (int item : list) {
+            assertEquals(expected, item);
+            expected++;
+        }
+    }
+}
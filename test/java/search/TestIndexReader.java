@@ -0,0 +1,175 @@
+package search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.analyzers.TfIdfAnalyzer;
+import search.index.IndexReader;
+import search.index.IndexWriter;
+import search.index.InvertedIndex;
+import search.index.PostingList;
+import search.index.PreparedQuery;
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class TestIndexReader extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    private IList<String> strToIList(String input) {
+        IList<String> output = new DoubleLinkedList<>();
+        for (String word : input.split(" ")) {
+            output.add(word);
+        }
+        return output;
+    }
+
+    private InvertedIndex makeExampleIndex() {
+        ISet<Webpage> documents = new ChainedHashSet<>();
+        documents.add(new Webpage(URI.create("http://example.com/a.html"), new DoubleLinkedList<>(),
+                strToIList("the mouse played with the cat"), "Title A", "Blurb A"));
+        documents.add(new Webpage(URI.create("http://example.com/b.html"), new DoubleLinkedList<>(),
+                strToIList("the quick brown fox jumped over the lazy dog"), "Title B", "Blurb \u00e9"));
+        documents.add(new Webpage(URI.create("http://example.com/c.html"), new DoubleLinkedList<>(),
+                strToIList("dog 1 and dog 2 ate the hot dog"), "Title C", "Blurb C"));
+        return new InvertedIndex(new TfIdfAnalyzer(documents));
+    }
+
+    private WebpageSummary[] makeSummaries(InvertedIndex index) {
+        WebpageSummary[] summaries = new WebpageSummary[index.getDocuments().size()];
+        for (int document = 0; document < summaries.length; document++) {
+            URI uri = index.getDocuments().getUri(document);
+            summaries[document] = new WebpageSummary(uri, "title " + document, "blurb \u00e9" + document);
+        }
+        return summaries;
+    }
+
+    @Test(timeout=SECOND)
+    public void testRoundTrip() throws IOException {
+        InvertedIndex index = this.makeExampleIndex();
+        double[] pageRanks = {0.5, 0.25, 0.125};
+        WebpageSummary[] summaries = this.makeSummaries(index);
+        URI outside = URI.create("http://elsewhere.com/");
+        URI[][] links = {
+            {index.getDocuments().getUri(2), outside},
+            {},
+            {index.getDocuments().getUri(0), index.getDocuments().getUri(1), index.getDocuments().getUri(0)},
+        };
+        Path directory = Files.createTempDirectory("index").resolve("example");
+        IndexWriter.write(directory, index, pageRanks, summaries, links);
+
+        assertTrue(IndexReader.exists(directory));
+        IndexReader reader = new IndexReader(directory);
+        InvertedIndex loaded = reader.getIndex();
+
+        assertEquals(index.getDocuments().size(), loaded.getDocuments().size());
+        for (int document = 0; document < summaries.length; document++) {
+            assertEquals(index.getDocuments().getUri(document), loaded.getDocuments().getUri(document));
+            assertEquals(summaries[document], reader.getSummaries()[document]);
+            assertEquals(pageRanks[document], reader.getPageRanks()[document], DELTA);
+            assertEquals(index.getDocumentNorm(document), loaded.getDocumentNorm(document), DELTA);
+            assertEquals(links[document].length, reader.getLinks()[document].length);
+            for (int link = 0; link < links[document].length; link++) {
+                assertEquals(links[document][link], reader.getLinks()[document][link]);
+            }
+        }
+
+        assertEquals(index.getTerms().size(), loaded.getTerms().size());
+        for (int term = 0; term < index.getTerms().size(); term++) {
+            assertEquals(index.getTerms().getTerm(term), loaded.getTerms().getTerm(term));
+            assertEquals(index.getIdfScore(term), loaded.getIdfScore(term), DELTA);
+
+            PostingList expected = index.getPostings(term);
+            PostingList actual = loaded.getPostings(term);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getDocument(i), actual.getDocument(i));
+                assertEquals(expected.getWeight(i), actual.getWeight(i), DELTA);
+            }
+            for (int target = 0; target <= summaries.length; target++) {
+                assertEquals(expected.advance(0, target), actual.advance(0, target));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testLoadedIndexScoresQueries() throws IOException {
+        InvertedIndex index = this.makeExampleIndex();
+        Path directory = Files.createTempDirectory("index");
+        IndexWriter.write(directory, index, new double[] {1.0, 1.0, 1.0}, this.makeSummaries(index));
+        InvertedIndex loaded = new IndexReader(directory).getIndex();
+
+        IList<String> query = strToIList("the dog dog cat unknown");
+        PreparedQuery expected = index.prepareQuery(query);
+        PreparedQuery actual = loaded.prepareQuery(query);
+        assertEquals(expected.getMagnitude(), actual.getMagnitude(), DELTA);
+        for (int document = 0; document < 3; document++) {
+            assertEquals(index.computeRelevance(expected, document), loaded.computeRelevance(actual, document), DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testIncompleteIndexIsRejected() throws IOException {
+        Path directory = Files.createTempDirectory("index");
+        assertFalse(IndexReader.exists(directory));
+
+        InvertedIndex index = this.makeExampleIndex();
+        IndexWriter.write(directory, index, new double[] {1.0, 1.0, 1.0}, this.makeSummaries(index));
+        Files.write(directory.resolve("index.meta"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertFalse(IndexReader.exists(directory));
+
+        try {
+            new IndexReader(directory);
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFailedWriteKeepsPreviousIndex() throws IOException {
+        InvertedIndex index = this.makeExampleIndex();
+        Path directory = Files.createTempDirectory("index");
+        IndexWriter.write(directory, index, new double[] {0.5, 0.25, 0.125}, this.makeSummaries(index));
+
+        // Too few summaries, so the write fails after it has started on the data files.
+        try {
+            IndexWriter.write(directory, index, new double[] {1.0, 1.0, 1.0}, new WebpageSummary[1]);
+            fail("Expected the write to fail");
+        } catch (RuntimeException ex) {
+            // All ok -- expected result
+        }
+
+        assertTrue(IndexReader.exists(directory));
+        IndexReader reader = new IndexReader(directory);
+        assertEquals(0.25, reader.getPageRanks()[1], DELTA);
+        assertEquals(this.makeSummaries(index)[2], reader.getSummaries()[2]);
+        for (int document = 0; document < 3; document++) {
+            assertEquals(index.getDocumentNorm(document), reader.getIndex().getDocumentNorm(document), DELTA);
+        }
+
+        // The next successful write replaces it, and cleans up after the failed one.
+        IndexWriter.write(directory, index, new double[] {1.0, 1.0, 1.0}, this.makeSummaries(index));
+        assertEquals(1.0, new IndexReader(directory).getPageRanks()[1], DELTA);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(4L, files.count());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.DocumentDictionary;
+import search.index.LinkGraph;
+import search.models.Webpage;
+
+import java.net.URI;
+
+public class TestLinkGraph extends BaseTest {
+    private Webpage buildPage(String uri, String... linksTo) {
+        IList<URI> links = new DoubleLinkedList<>();
+        for (String link : linksTo) {
+            links.add(URI.create(link));
+        }
+        return new Webpage(URI.create(uri), links, new DoubleLinkedList<>(), "title", "blurb");
+    }
+
+    private int[] getLinks(LinkGraph graph, int node) {
+        int[] links = new int[graph.getOutDegree(node)];
+        System.arraycopy(graph.getTargets(), graph.getOffsets()[node], links, 0, links.length);
+        return links;
+    }
+
+    @Test(timeout=SECOND)
+    public void testSelfRepeatedAndOutsideLinksOmitted() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(this.buildPage("http://a", "http://c", "http://b", "http://a", "http://c", "http://elsewhere"));
+        pages.add(this.buildPage("http://b"));
+        pages.add(this.buildPage("http://c", "http://a"));
+        DocumentDictionary documents = new DocumentDictionary(pages);
+        LinkGraph graph = new LinkGraph(pages, documents);
+
+        int a = documents.getId(URI.create("http://a"));
+        int b = documents.getId(URI.create("http://b"));
+        int c = documents.getId(URI.create("http://c"));
+        assertEquals(3, graph.size());
+        assertEquals(3, graph.numLinks());
+        assertEquals(2, graph.getOutDegree(a));
+        assertEquals(0, graph.getOutDegree(b));
+        assertEquals(1, graph.getOutDegree(c));
+
+        int[] links = this.getLinks(graph, a);
+        assertEquals(Math.min(b, c), links[0]);
+        assertEquals(Math.max(b, c), links[1]);
+        assertEquals(a, this.getLinks(graph, c)[0]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testTranspose() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(this.buildPage("http://a", "http://b", "http://c"));
+        pages.add(this.buildPage("http://b", "http://c"));
+        pages.add(this.buildPage("http://c"));
+        DocumentDictionary documents = new DocumentDictionary(pages);
+        LinkGraph graph = new LinkGraph(pages, documents).transpose();
+
+        int a = documents.getId(URI.create("http://a"));
+        int b = documents.getId(URI.create("http://b"));
+        int c = documents.getId(URI.create("http://c"));
+        assertEquals(3, graph.size());
+        assertEquals(3, graph.numLinks());
+        assertEquals(0, graph.getOutDegree(a));
+        assertEquals(1, graph.getOutDegree(b));
+        assertEquals(a, this.getLinks(graph, b)[0]);
+        int[] links = this.getLinks(graph, c);
+        assertEquals(Math.min(a, b), links[0]);
+        assertEquals(Math.max(a, b), links[1]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmptyGraph() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        LinkGraph graph = new LinkGraph(pages, new DocumentDictionary(pages));
+
+        assertEquals(0, graph.size());
+        assertEquals(0, graph.numLinks());
+    }
+}
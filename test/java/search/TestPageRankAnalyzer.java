@@ -1,5 +1,7 @@
 package search;
 
+import static org.junit.Assert.assertTrue;
+
 import datastructures.concrete.ChainedHashSet;
 import datastructures.concrete.DoubleLinkedList;
 import datastructures.interfaces.IList;
@@ -7,9 +9,11 @@ import datastructures.interfaces.ISet;
 import misc.BaseTest;
 import org.junit.Test;
 import search.analyzers.PageRankAnalyzer;
+import search.index.DocumentDictionary;
 import search.models.Webpage;
 
 import java.net.URI;
+import java.util.Random;
 
 public class TestPageRankAnalyzer extends BaseTest {
     // We say two floating point numbers are equal if they're within
@@ -120,4 +124,160 @@ public class TestPageRankAnalyzer extends BaseTest {
         assertEquals(0.2, analyzer.computePageRank(pageEUri), DELTA);
         assertEquals(0.0, analyzer.computePageRank(pageFUri), DELTA);
     }
+
+    @Test(timeout=SECOND)
+    public void testManyPagesWithoutLinks() {
+        // A hub linking to many leaves, none of which link anywhere. Each leaf's rank
+        // is spread over every page, so this is slow unless that is done in one go.
+        int numLeaves = 20000;
+        URI hubUri = URI.create("http://example.com/hub.html");
+        URI[] leafUris = new URI[numLeaves];
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numLeaves; i++) {
+            leafUris[i] = URI.create("http://example.com/leaf-" + i + ".html");
+            pages.add(this.buildPage(leafUris[i], new URI[] {}));
+        }
+        pages.add(this.buildPage(hubUri, leafUris));
+
+        PageRankAnalyzer analyzer = new PageRankAnalyzer(pages, 0.85, 1e-12, 100);
+
+        // At the fixed point, hub = (1 - d) / N + d * (1 - hub) / N, so hub = 1 / (N + d).
+        int numPages = numLeaves + 1;
+        double hub = 1.0 / (numPages + 0.85);
+        double leaf = (1.0 - hub) / numLeaves;
+        assertEquals(hub * numPages, analyzer.computePageRank(hubUri) * numPages, DELTA);
+        assertEquals(leaf * numPages, analyzer.computePageRank(leafUris[0]) * numPages, DELTA);
+        assertEquals(leaf * numPages, analyzer.computePageRank(leafUris[numLeaves - 1]) * numPages, DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testParallelMatchesSequential() {
+        // Enough pages that the parallel analyzer splits them into several chunks.
+        int numPages = 10000;
+        URI[] uris = new URI[numPages];
+        for (int i = 0; i < numPages; i++) {
+            uris[i] = URI.create("http://example.com/page-" + i + ".html");
+        }
+        Random random = new Random(42);
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            // Every tenth page has no links.
+            URI[] links = new URI[i % 10 == 0 ? 0 : 1 + random.nextInt(5)];
+            for (int j = 0; j < links.length; j++) {
+                links[j] = uris[random.nextInt(numPages)];
+            }
+            pages.add(this.buildPage(uris[i], links));
+        }
+        DocumentDictionary documents = new DocumentDictionary(pages);
+
+        PageRankAnalyzer sequential = new PageRankAnalyzer(pages, documents, 0.85, 1e-10, 100, PageRankAnalyzer.Solver.JACOBI);
+        PageRankAnalyzer parallel = new PageRankAnalyzer(pages, documents, 0.85, 1e-10, 100, PageRankAnalyzer.Solver.PARALLEL_JACOBI);
+
+        assertEquals(sequential.getIterations(), parallel.getIterations());
+        assertEquals(sequential.getResidual(), parallel.getResidual(), 1e-9);
+        for (int i = 0; i < numPages; i++) {
+            assertEquals(sequential.computePageRank(uris[i]) * numPages,
+                    parallel.computePageRank(uris[i]) * numPages, DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSolversAgree() {
+        int numPages = 2000;
+        URI[] uris = new URI[numPages];
+        for (int i = 0; i < numPages; i++) {
+            uris[i] = URI.create("http://example.com/page-" + i + ".html");
+        }
+        Random random = new Random(11);
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            URI[] links = new URI[i % 10 == 0 ? 0 : 1 + random.nextInt(3)];
+            for (int j = 0; j < links.length; j++) {
+                links[j] = uris[random.nextInt(numPages)];
+            }
+            pages.add(this.buildPage(uris[i], links));
+        }
+        DocumentDictionary documents = new DocumentDictionary(pages);
+
+        PageRankAnalyzer jacobi = new PageRankAnalyzer(pages, documents, 0.85, 1e-12, 1000,
+                PageRankAnalyzer.Solver.JACOBI);
+        for (PageRankAnalyzer.Solver solver : PageRankAnalyzer.Solver.values()) {
+            PageRankAnalyzer analyzer = new PageRankAnalyzer(pages, documents, 0.85, 1e-12, 1000, solver);
+            assertTrue(analyzer.getIterations() < 1000);
+            assertTrue(analyzer.getResidual() < 1e-12 * numPages);
+            for (int i = 0; i < numPages; i++) {
+                assertEquals(jacobi.computePageRank(uris[i]) * numPages,
+                        analyzer.computePageRank(uris[i]) * numPages, DELTA);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testUpdateMatchesFullComputation() {
+        int numPages = 2000;
+        URI[] uris = new URI[numPages + 10];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = URI.create("http://example.com/page-" + i + ".html");
+        }
+        Random random = new Random(7);
+        Webpage[] webpages = new Webpage[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            URI[] links = new URI[i % 10 == 0 ? 0 : 1 + random.nextInt(5)];
+            for (int j = 0; j < links.length; j++) {
+                links[j] = uris[random.nextInt(uris.length)];
+            }
+            webpages[i] = this.buildPage(uris[i], links);
+        }
+
+        // Compute the ranks of the first pages, then add the last ten and remove one.
+        ISet<Webpage> before = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            before.add(webpages[i]);
+        }
+        DocumentDictionary beforeDocuments = new DocumentDictionary(before);
+        PageRankAnalyzer previous = new PageRankAnalyzer(before, beforeDocuments, 0.85, 1e-10, 200);
+        double[] previousPageRanks = new double[numPages];
+        for (int document = 0; document < numPages; document++) {
+            previousPageRanks[document] = previous.computePageRank(document);
+        }
+
+        ISet<Webpage> after = new ChainedHashSet<>();
+        for (int i = 1; i < webpages.length; i++) {
+            after.add(webpages[i]);
+        }
+        DocumentDictionary afterDocuments = new DocumentDictionary(after);
+        PageRankAnalyzer full = new PageRankAnalyzer(after, afterDocuments, 0.85, 1e-10, 200);
+        PageRankAnalyzer updated = new PageRankAnalyzer(after, afterDocuments,
+                beforeDocuments, previousPageRanks, 0.85, 1e-10, 200);
+
+        // No page's rank would change by more than epsilon in another iteration.
+        assertTrue(updated.getResidual() <= 1e-10 * uris.length);
+        for (int i = 1; i < uris.length; i++) {
+            assertEquals(full.computePageRank(uris[i]) * uris.length,
+                    updated.computePageRank(uris[i]) * uris.length, DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testUpdateWithNoPreviousPages() {
+        URI pageAUri = URI.create("http://example.com/page-a.html");
+        URI pageBUri = URI.create("http://example.com/page-b.html");
+        URI pageCUri = URI.create("http://example.com/page-c.html");
+        URI pageDUri = URI.create("http://example.com/page-d.html");
+
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(this.buildPage(pageAUri, new URI[] {pageBUri, pageCUri, pageDUri}));
+        pages.add(this.buildPage(pageBUri, new URI[] {pageAUri}));
+        pages.add(this.buildPage(pageCUri, new URI[] {pageAUri}));
+        pages.add(this.buildPage(pageDUri, new URI[] {pageAUri}));
+        ISet<Webpage> noPages = new ChainedHashSet<>();
+
+        PageRankAnalyzer analyzer = new PageRankAnalyzer(pages, new DocumentDictionary(pages),
+                new DocumentDictionary(noPages), new double[0], 0.85, 1e-8, 100);
+
+        assertEquals(0.47973, analyzer.computePageRank(pageAUri), DELTA);
+        assertEquals(0.17342, analyzer.computePageRank(pageBUri), DELTA);
+        assertEquals(0.17342, analyzer.computePageRank(pageCUri), DELTA);
+        assertEquals(0.17342, analyzer.computePageRank(pageDUri), DELTA);
+    }
 }
@@ -0,0 +1,152 @@
+package search;
+
+import static org.junit.Assert.assertTrue;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.ArrayPostingList;
+import search.index.CompressedPostingList;
+import search.index.PostingList;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestPostingList extends BaseTest {
+    // Compressed weights are rounded to 11 bits of mantissa, so they are within this
+    // fraction of the original.
+    public static final double WEIGHT_ERROR = 1.0 / (1 << 12);
+
+    private PostingList makeList(int... documents) {
+        ArrayPostingList postings = new ArrayPostingList();
+        for (int i = 0; i < documents.length; i++) {
+            postings.add(documents[i], i + 1.0);
+        }
+        return postings;
+    }
+
+    @Test(timeout=SECOND)
+    public void testAdvance() {
+        PostingList postings = this.makeList(2, 3, 5, 8, 13, 21, 34);
+
+        assertEquals(0, postings.advance(0, 0));
+        assertEquals(0, postings.advance(0, 2));
+        assertEquals(2, postings.advance(0, 4));
+        assertEquals(4, postings.advance(1, 13));
+        assertEquals(6, postings.advance(0, 22));
+        assertEquals(7, postings.advance(0, 35));
+        assertEquals(5, postings.advance(5, 3));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAdvanceOverManyPostings() {
+        ArrayPostingList postings = new ArrayPostingList();
+        for (int i = 0; i < 10000; i++) {
+            postings.add(i * 3, 1.0);
+        }
+
+        int position = 0;
+        for (int target = 0; target < 30000; target += 7) {
+            position = postings.advance(position, target);
+            assertEquals((target + 2) / 3, position);
+        }
+        assertEquals(10000, postings.advance(position, 30000));
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testOutOfOrderDocumentRejected() {
+        this.makeList(3, 3);
+    }
+
+    private ArrayPostingList makeRandomList(int size, int maxGap, long seed) {
+        Random random = new Random(seed);
+        ArrayPostingList postings = new ArrayPostingList();
+        int document = random.nextInt(maxGap);
+        for (int i = 0; i < size; i++) {
+            postings.add(document, random.nextDouble() * random.nextDouble() + 1e-9);
+            document += 1 + random.nextInt(maxGap);
+        }
+        return postings;
+    }
+
+    @Test(timeout=SECOND)
+    public void testCompressedRoundTrip() {
+        for (int maxGap : new int[] {1, 3, 1000, 1 << 20}) {
+            ArrayPostingList expected = this.makeRandomList(1000, maxGap, maxGap);
+            PostingList actual = CompressedPostingList.compress(expected);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getDocument(i), actual.getDocument(i));
+                assertEquals(expected.getWeight(i), actual.getWeight(i), expected.getWeight(i) * WEIGHT_ERROR);
+                assertTrue(actual.getWeight(i) > 0.0);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCompressedSmallWeightsNextToOutlier() {
+        // Term frequencies on long pages are tiny next to the one page that is mostly
+        // the term. They should still keep their own precision and their order.
+        ArrayPostingList expected = new ArrayPostingList();
+        expected.add(0, 0.9);
+        for (int i = 1; i < 300; i++) {
+            expected.add(i, 1.0 / (10000 + 7 * i));
+        }
+        expected.add(300, 1e-12);
+        PostingList actual = CompressedPostingList.compress(expected);
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(actual.getWeight(i) > 0.0);
+            if (i < 300) {
+                assertEquals(expected.getWeight(i), actual.getWeight(i), expected.getWeight(i) * WEIGHT_ERROR);
+            }
+            if (i > 1 && i < 300) {
+                assertTrue(actual.getWeight(i) <= actual.getWeight(i - 1));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCompressingAgainKeepsWeights() {
+        CompressedPostingList first = CompressedPostingList.compress(this.makeRandomList(1000, 5, 7));
+        byte[] encoding = first.getEncoding();
+        assertTrue(Arrays.equals(encoding, CompressedPostingList.encode(first)));
+
+        // A list stored inside a larger buffer gives back just its own bytes.
+        ByteBuffer buffer = ByteBuffer.allocate(encoding.length + 20);
+        buffer.position(13);
+        buffer.put(encoding);
+        CompressedPostingList stored = new CompressedPostingList(buffer, 13);
+        assertTrue(Arrays.equals(encoding, stored.getEncoding()));
+        assertEquals(first.getWeight(999), stored.getWeight(999));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCompressedLargeAndSingleDocuments() {
+        PostingList single = CompressedPostingList.compress(this.makeList(Integer.MAX_VALUE - 1));
+        assertEquals(1, single.size());
+        assertEquals(Integer.MAX_VALUE - 1, single.getDocument(0));
+        assertEquals(1.0, single.getWeight(0), 1e-9);
+
+        PostingList wide = CompressedPostingList.compress(this.makeList(0, 5, 1 << 30, Integer.MAX_VALUE - 1));
+        assertEquals(0, wide.getDocument(0));
+        assertEquals(5, wide.getDocument(1));
+        assertEquals(1 << 30, wide.getDocument(2));
+        assertEquals(Integer.MAX_VALUE - 1, wide.getDocument(3));
+        assertEquals(3, wide.advance(0, (1 << 30) + 1));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCompressedAdvanceMatchesArray() {
+        ArrayPostingList expected = this.makeRandomList(2000, 8, 42);
+        PostingList actual = CompressedPostingList.compress(expected);
+        int last = expected.getDocument(expected.size() - 1);
+
+        for (int from : new int[] {0, 1, 127, 128, 129, 1000, 1999, 2000}) {
+            for (int target = 0; target <= last + 1; target += 3) {
+                assertEquals(expected.advance(from, target), actual.advance(from, target));
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.OpenHashSet;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.analyzers.PageRankAnalyzer;
+import search.index.DocumentDictionary;
+import search.index.IndexWriter;
+import search.index.Segment;
+import search.models.Result;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class TestSearchEngine extends BaseTest {
+    // Page ranks are only computed to within PAGE_RANK_EPSILON, and incrementally
+    // updated ones start from different ranks than fresh ones, so scores from the two
+    // only agree to about this much.
+    public static final double DELTA = 0.001;
+
+    private static final String[] QUERIES = {
+        "dog", "the dog", "cat cat mouse", "quick brown fox", "zebra", "hot dog unknown", "the",
+    };
+
+    private IList<String> strToIList(String input) {
+        IList<String> output = new DoubleLinkedList<>();
+        for (String word : input.split(" ")) {
+            output.add(word);
+        }
+        return output;
+    }
+
+    private URI uri(String name) {
+        return URI.create("http://example.com/" + name);
+    }
+
+    private Webpage buildPage(String name, String words, String... linkNames) {
+        IList<URI> links = new DoubleLinkedList<>();
+        for (String link : linkNames) {
+            links.add(this.uri(link));
+        }
+        return new Webpage(this.uri(name), links, this.strToIList(words), "Title " + name, "Blurb " + name);
+    }
+
+    private Webpage[] makeExamplePages() {
+        return new Webpage[] {
+            this.buildPage("a", "the mouse played with the cat", "b", "c"),
+            this.buildPage("b", "the quick brown fox jumped over the lazy dog", "a"),
+            this.buildPage("c", "dog 1 and dog 2 ate the hot dog", "a", "d"),
+            this.buildPage("d", "the cat chased the dog", "c"),
+            this.buildPage("e", "a quick cat is a happy cat", "a", "b", "d"),
+            this.buildPage("f", "the dog and the cat and the mouse"),
+        };
+    }
+
+    /**
+     * Returns an engine opened from a freshly built index of the given pages, with
+     * page ranks computed from scratch.
+     */
+    private SearchEngine buildEngine(Webpage... webpages) throws IOException {
+        ISet<Webpage> pages = new OpenHashSet<>();
+        for (Webpage webpage : webpages) {
+            pages.add(webpage);
+        }
+        Segment segment = Segment.build(pages, 1.0);
+        DocumentDictionary documents = segment.getIndex().getDocuments();
+        PageRankAnalyzer analyzer = new PageRankAnalyzer(pages, documents, SearchEngine.PAGE_RANK_DECAY,
+                SearchEngine.PAGE_RANK_EPSILON, SearchEngine.PAGE_RANK_ITERATION_LIMIT);
+        double[] pageRanks = new double[documents.size()];
+        for (int document = 0; document < pageRanks.length; document++) {
+            pageRanks[document] = analyzer.computePageRank(document);
+        }
+        segment = segment.withPageRanks(pageRanks);
+
+        Path directory = Files.createTempDirectory("index");
+        IndexWriter.write(directory, segment.getIndex(), segment.getPageRanks(), segment.getSummaries(),
+                segment.getLinks());
+        return new SearchEngine(directory);
+    }
+
+    private String randomWords(Random random, int numWords) {
+        // A skewed choice of words gives the common ones long posting lists spanning
+        // several blocks, and the rare ones short lists that WAND can skip around.
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            words.append("word").append((int) (40 * random.nextDouble() * random.nextDouble()));
+        }
+        return words.toString();
+    }
+
+    private boolean containsPage(IList<Result> results, URI uri) {
+        for (Result result : results) {
+            if (result.getUri().equals(uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testWriteIndexToDirectoryBeingServed() throws IOException {
+        Random random = new Random(17);
+        Webpage[] pages = new Webpage[3000];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = this.buildPage("page" + i, this.randomWords(random, 1 + random.nextInt(60)),
+                    "page" + random.nextInt(pages.length));
+        }
+        Path directory = Files.createTempDirectory("index");
+        this.buildEngine(pages).writeIndex(directory);
+
+        // The opened engine serves its postings straight out of the files in the
+        // directory, so saving it back there must not overwrite them.
+        SearchEngine engine = new SearchEngine(directory);
+        IList<String> query = this.strToIList("word0 word3 word17");
+        IList<Result> expected = engine.getTopKResults(query, 20);
+        engine.writeIndex(directory);
+        engine.writeIndex(directory);
+
+        SearchEngine reopened = new SearchEngine(directory);
+        for (SearchEngine engineToCheck : new SearchEngine[] {engine, reopened}) {
+            IList<Result> results = engineToCheck.getTopKResults(query, 20);
+            assertEquals(expected.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i).getUri(), results.get(i).getUri());
+                assertEquals(expected.get(i).getScore(), results.get(i).getScore(), 1e-9);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemovedPageDisappearsRightAway() throws IOException {
+        SearchEngine engine = this.buildEngine(this.makeExamplePages());
+        assertTrue(this.containsPage(engine.getTopKResults(this.strToIList("dog"), 10), this.uri("c")));
+
+        engine.removePage(this.uri("c"));
+        for (SearchEngine.EvaluationMode mode : SearchEngine.EvaluationMode.values()) {
+            IList<Result> results = engine.getTopKResults(this.strToIList("dog"), 10, mode);
+            assertFalse(this.containsPage(results, this.uri("c")));
+            assertEquals(3, results.size());
+        }
+        engine.awaitMerges();
+        assertFalse(this.containsPage(engine.getTopKResults(this.strToIList("dog"), 10), this.uri("c")));
+    }
+
+    @Test(timeout=SECOND)
+    public void testUpdatedPageShowsNewText() throws IOException {
+        SearchEngine engine = this.buildEngine(this.makeExamplePages());
+        engine.updatePage(this.buildPage("b", "the zebra slept", "a"));
+
+        for (SearchEngine.EvaluationMode mode : SearchEngine.EvaluationMode.values()) {
+            IList<Result> results = engine.getTopKResults(this.strToIList("zebra"), 10, mode);
+            assertEquals(1, results.size());
+            assertTrue(this.containsPage(results, this.uri("b")));
+            assertFalse(this.containsPage(engine.getTopKResults(this.strToIList("fox"), 10, mode), this.uri("b")));
+        }
+        engine.awaitMerges();
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddedPageIsFound() throws IOException {
+        SearchEngine engine = this.buildEngine(this.makeExamplePages());
+        engine.addPage(this.buildPage("g", "a zebra and a dog", "c"));
+
+        IList<Result> results = engine.getTopKResults(this.strToIList("zebra"), 10);
+        assertEquals(1, results.size());
+        assertTrue(this.containsPage(results, this.uri("g")));
+        assertEquals("Title g", results.get(0).getTitle());
+        engine.awaitMerges();
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testAddExistingPage() throws IOException {
+        SearchEngine engine = this.buildEngine(this.makeExamplePages());
+        engine.addPage(this.buildPage("a", "a new version of a"));
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testRemoveMissingPage() throws IOException {
+        SearchEngine engine = this.buildEngine(this.makeExamplePages());
+        engine.removePage(this.uri("c"));
+        engine.removePage(this.uri("c"));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testAwaitMergesMatchesFreshBuild() throws IOException {
+        int mergeFactor = SearchEngine.MERGE_FACTOR;
+        double normTolerance = SearchEngine.NORM_REFRESH_TOLERANCE;
+        double pageRankRatio = SearchEngine.PAGE_RANK_REFRESH_RATIO;
+        try {
+            // Merge as eagerly as possible, and never leave norms or page ranks stale.
+            SearchEngine.MERGE_FACTOR = 2;
+            SearchEngine.NORM_REFRESH_TOLERANCE = 0.0;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = 0.0;
+
+            Webpage[] pages = this.makeExamplePages();
+            SearchEngine engine = this.buildEngine(pages[0], pages[1], pages[2]);
+            engine.addPage(pages[3]);
+            engine.addPage(pages[4]);
+            engine.removePage(this.uri("a"));
+            engine.addPage(pages[5]);
+            Webpage updated = this.buildPage("b", "the zebra slept", "c", "d");
+            engine.updatePage(updated);
+            engine.awaitMerges();
+
+            SearchEngine fresh = this.buildEngine(updated, pages[2], pages[3], pages[4], pages[5]);
+            for (String query : QUERIES) {
+                for (String name : new String[] {"b", "c", "d", "e", "f"}) {
+                    assertEquals(query + " " + name,
+                            fresh.computeScore(this.strToIList(query), this.uri(name)),
+                            engine.computeScore(this.strToIList(query), this.uri(name)),
+                            DELTA);
+                }
+            }
+        } finally {
+            SearchEngine.MERGE_FACTOR = mergeFactor;
+            SearchEngine.NORM_REFRESH_TOLERANCE = normTolerance;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = pageRankRatio;
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testWritesDuringMaintenanceAreKept() throws IOException {
+        int mergeFactor = SearchEngine.MERGE_FACTOR;
+        double pageRankRatio = SearchEngine.PAGE_RANK_REFRESH_RATIO;
+        try {
+            // With every change merging segments and recomputing page ranks, most of
+            // these changes land while a maintenance pass is running, so its result
+            // has to be rebased onto them.
+            SearchEngine.MERGE_FACTOR = 2;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = 0.0;
+
+            SearchEngine engine = this.buildEngine(this.makeExamplePages());
+            int numPages = 300;
+            for (int i = 0; i < numPages; i++) {
+                engine.addPage(this.buildPage("added" + i, "page number" + i + " the dog", "a", "added" + (i / 2)));
+                if (i % 5 == 0) {
+                    engine.updatePage(this.buildPage("added" + i, "page renumber" + i + " the cat", "b"));
+                }
+                if (i % 3 == 0) {
+                    engine.removePage(this.uri("added" + (i / 3)));
+                }
+            }
+            engine.awaitMerges();
+
+            for (int i = 0; i < numPages; i++) {
+                boolean removed = i * 3 < numPages;
+                IList<Result> numbered = engine.getTopKResults(this.strToIList("number" + i), 10);
+                IList<Result> renumbered = engine.getTopKResults(this.strToIList("renumber" + i), 10);
+                assertEquals("page " + i, !removed && i % 5 != 0, numbered.size() == 1);
+                assertEquals("page " + i, !removed && i % 5 == 0, renumbered.size() == 1);
+            }
+        } finally {
+            SearchEngine.MERGE_FACTOR = mergeFactor;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = pageRankRatio;
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testEvaluationModesMatchExhaustive() throws IOException {
+        Random random = new Random(11);
+        Webpage[] pages = new Webpage[400];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = this.buildPage("page" + i, this.randomWords(random, 1 + random.nextInt(60)),
+                    "page" + random.nextInt(pages.length));
+        }
+        SearchEngine engine = this.buildEngine(pages);
+
+        // Leave the index with a large segment, several small ones, and deleted pages
+        // in both, some of them replaced by newer versions in a later segment.
+        for (int i = 0; i < 45; i++) {
+            engine.addPage(this.buildPage("added" + i, this.randomWords(random, 1 + random.nextInt(60)), "page0"));
+        }
+        engine.awaitMerges();
+        for (int i = 3; i < pages.length; i += 11) {
+            engine.updatePage(this.buildPage("page" + i, this.randomWords(random, 1 + random.nextInt(60)), "page0"));
+        }
+        for (int i = 0; i < pages.length; i += 7) {
+            engine.removePage(this.uri("page" + i));
+        }
+        for (int i = 0; i < 45; i += 4) {
+            engine.removePage(this.uri("added" + i));
+        }
+        // Let maintenance settle, so the scores do not change between the queries we
+        // compare. None of the segments has enough deleted pages to be rewritten.
+        engine.awaitMerges();
+
+        for (int trial = 0; trial < 200; trial++) {
+            String words = this.randomWords(random, 1 + random.nextInt(5));
+            IList<String> query = this.strToIList(words);
+            int k = 1 + random.nextInt(random.nextBoolean() ? 10 : 500);
+            IList<Result> expected = engine.getTopKResults(query, k, SearchEngine.EvaluationMode.EXHAUSTIVE);
+            for (SearchEngine.EvaluationMode mode : SearchEngine.EvaluationMode.values()) {
+                IList<Result> results = engine.getTopKResults(query, k, mode);
+                String message = mode + " '" + words + "' k=" + k;
+                assertEquals(message, expected.size(), results.size());
+                // Pages tied at the k-th score may come back in any order, so rather
+                // than comparing pages, we check the scores rank by rank, and that every
+                // page returned is live and really has the score it was returned with.
+                for (int i = 0; i < results.size(); i++) {
+                    Result result = results.get(i);
+                    assertEquals(message, expected.get(i).getScore(), result.getScore(), 1e-9);
+                    assertEquals(message, engine.computeScore(query, result.getUri()), result.getScore(), 1e-9);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks every evaluation mode against a brute-force search, which scores every live
+     * page on its own with computeScore. Unlike the modes, this never walks a posting
+     * list from the start, so it catches pages that every posting-based search skips.
+     */
+    private void assertModesMatchBruteForce(SearchEngine engine, Set<URI> livePages, Random random) {
+        for (int trial = 0; trial < 50; trial++) {
+            String words = this.randomWords(random, 1 + random.nextInt(4));
+            IList<String> query = this.strToIList(words);
+            int k = 1 + random.nextInt(random.nextBoolean() ? 10 : 300);
+
+            // Pages without any of the query's words score zero and are never returned.
+            List<Double> scores = new ArrayList<>();
+            Map<URI, Double> scoresByPage = new HashMap<>();
+            for (URI uri : livePages) {
+                double score = engine.computeScore(query, uri);
+                if (score > 0.0) {
+                    scores.add(score);
+                    scoresByPage.put(uri, score);
+                }
+            }
+            scores.sort(Collections.reverseOrder());
+            List<Double> expected = scores.subList(0, Math.min(k, scores.size()));
+
+            for (SearchEngine.EvaluationMode mode : SearchEngine.EvaluationMode.values()) {
+                IList<Result> results = engine.getTopKResults(query, k, mode);
+                String message = mode + " '" + words + "' k=" + k;
+                assertEquals(message, expected.size(), results.size());
+                Set<URI> returned = new HashSet<>();
+                for (int i = 0; i < results.size(); i++) {
+                    Result result = results.get(i);
+                    assertTrue(message, scoresByPage.containsKey(result.getUri()));
+                    assertTrue(message, returned.add(result.getUri()));
+                    assertEquals(message, scoresByPage.get(result.getUri()), result.getScore(), 1e-9);
+                    assertEquals(message, expected.get(i), result.getScore(), 1e-9);
+                }
+                // Only pages tied with the last result may be left out.
+                if (!expected.isEmpty()) {
+                    double lowest = expected.get(expected.size() - 1);
+                    for (Map.Entry<URI, Double> entry : scoresByPage.entrySet()) {
+                        if (entry.getValue() > lowest + 1e-9) {
+                            assertTrue(message + " " + entry.getKey(), returned.contains(entry.getKey()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(timeout=20 * SECOND)
+    public void testEvaluationModesMatchBruteForce() throws IOException {
+        int mergeFactor = SearchEngine.MERGE_FACTOR;
+        double deletedRatio = SearchEngine.MAX_DELETED_RATIO;
+        double normTolerance = SearchEngine.NORM_REFRESH_TOLERANCE;
+        double pageRankRatio = SearchEngine.PAGE_RANK_REFRESH_RATIO;
+        try {
+            Random random = new Random(5);
+            Set<URI> livePages = new HashSet<>();
+            Webpage[] pages = new Webpage[300];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = this.buildPage("page" + i, this.randomWords(random, 1 + random.nextInt(60)),
+                        "page" + random.nextInt(pages.length));
+                livePages.add(pages[i].getUri());
+            }
+            SearchEngine engine = this.buildEngine(pages);
+            this.assertModesMatchBruteForce(engine, livePages, random);
+
+            // Keep maintenance from changing any scores, so we see the index exactly as
+            // the writes left it: new segments, deleted pages and stale norms.
+            SearchEngine.MERGE_FACTOR = Integer.MAX_VALUE;
+            SearchEngine.MAX_DELETED_RATIO = 1.0;
+            SearchEngine.NORM_REFRESH_TOLERANCE = Double.POSITIVE_INFINITY;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < 30; i++) {
+                Webpage page = this.buildPage("added" + i, this.randomWords(random, 1 + random.nextInt(60)), "page0");
+                engine.addPage(page);
+                livePages.add(page.getUri());
+            }
+            for (int i = 0; i < pages.length; i += 9) {
+                engine.removePage(pages[i].getUri());
+                livePages.remove(pages[i].getUri());
+            }
+            for (int i = 4; i < pages.length; i += 13) {
+                if (livePages.contains(pages[i].getUri())) {
+                    engine.updatePage(this.buildPage("page" + i, this.randomWords(random, 1 + random.nextInt(60))));
+                }
+            }
+            engine.awaitMerges();
+            this.assertModesMatchBruteForce(engine, livePages, random);
+
+            // Then let a maintenance pass merge the new segments, refresh every norm and
+            // page rank, and rewrite the segments holding many deleted pages.
+            SearchEngine.MERGE_FACTOR = 2;
+            SearchEngine.MAX_DELETED_RATIO = 0.0;
+            SearchEngine.NORM_REFRESH_TOLERANCE = 0.0;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = 0.0;
+            engine.removePage(this.uri("added0"));
+            livePages.remove(this.uri("added0"));
+            engine.awaitMerges();
+            this.assertModesMatchBruteForce(engine, livePages, random);
+        } finally {
+            SearchEngine.MERGE_FACTOR = mergeFactor;
+            SearchEngine.MAX_DELETED_RATIO = deletedRatio;
+            SearchEngine.NORM_REFRESH_TOLERANCE = normTolerance;
+            SearchEngine.PAGE_RANK_REFRESH_RATIO = pageRankRatio;
+        }
+    }
+}
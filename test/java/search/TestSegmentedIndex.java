@@ -0,0 +1,160 @@
+package search;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.InvertedIndex;
+import search.index.PreparedQuery;
+import search.index.Segment;
+import search.index.SegmentedIndex;
+import search.models.Webpage;
+
+import java.net.URI;
+
+public class TestSegmentedIndex extends BaseTest {
+    // Weights are quantized, and merging quantizes them again, so scores from
+    // differently built indexes only agree to about this much.
+    public static final double DELTA = 0.0001;
+
+    private static final String[] QUERIES = {
+        "dog", "the dog", "cat cat mouse", "quick brown fox", "hot dog unknown", "the", "unknown",
+    };
+
+    private IList<String> strToIList(String input) {
+        IList<String> output = new DoubleLinkedList<>();
+        for (String word : input.split(" ")) {
+            output.add(word);
+        }
+        return output;
+    }
+
+    private Webpage buildPage(String name, String words) {
+        return new Webpage(URI.create("http://example.com/" + name), new DoubleLinkedList<>(),
+                strToIList(words), "Title " + name, "Blurb " + name);
+    }
+
+    private Segment buildSegment(Webpage... webpages) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (Webpage webpage : webpages) {
+            pages.add(webpage);
+        }
+        return Segment.build(pages, 1.0);
+    }
+
+    private Webpage[] makeExamplePages() {
+        return new Webpage[] {
+            this.buildPage("a", "the mouse played with the cat"),
+            this.buildPage("b", "the quick brown fox jumped over the lazy dog"),
+            this.buildPage("c", "dog 1 and dog 2 ate the hot dog"),
+            this.buildPage("d", "the cat chased the dog"),
+            this.buildPage("e", "a quick cat is a happy cat"),
+        };
+    }
+
+    /**
+     * Checks that every page in the expected segment scores the same against every
+     * query in the segmented index.
+     */
+    private void assertSameScores(Segment expected, SegmentedIndex actual) {
+        InvertedIndex index = expected.getIndex();
+        assertEquals(index.getDocuments().size(), actual.numLiveDocuments());
+        for (String query : QUERIES) {
+            PreparedQuery expectedQuery = index.prepareQuery(this.strToIList(query));
+            PreparedQuery actualQuery = actual.prepareQuery(this.strToIList(query));
+            assertEquals(expectedQuery.getMagnitude(), actualQuery.getMagnitude(), DELTA);
+            for (int document = 0; document < index.getDocuments().size(); document++) {
+                int found = actual.findDocument(index.getDocuments().getUri(document));
+                assertEquals(index.computeRelevance(expectedQuery, document),
+                        actual.computeRelevance(actualQuery, found), DELTA);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddedSegmentsMatchSingleIndex() {
+        Webpage[] pages = this.makeExamplePages();
+        SegmentedIndex index = new SegmentedIndex(this.buildSegment(pages[0], pages[1]))
+                .withSegment(this.buildSegment(pages[2]))
+                .withSegment(this.buildSegment(pages[3], pages[4]));
+        assertEquals(3, index.numSegments());
+        assertEquals(5, index.size());
+        assertEquals(3, index.getDocumentFrequency("dog"));
+        assertEquals(Math.log(5.0 / 3.0), index.getIdfScore("dog"), DELTA);
+
+        this.assertSameScores(this.buildSegment(pages), index.withRefreshedNorms());
+    }
+
+    @Test(timeout=SECOND)
+    public void testDeletedPagesCountUntilMerged() {
+        Webpage[] pages = this.makeExamplePages();
+        SegmentedIndex index = new SegmentedIndex(this.buildSegment(pages[0], pages[1], pages[2]))
+                .withSegment(this.buildSegment(pages[3], pages[4]));
+        URI removed = pages[2].getUri();
+        index = index.withDeletion(index.findDocument(removed));
+
+        assertEquals(-1, index.findDocument(removed));
+        assertEquals(5, index.size());
+        assertEquals(4, index.numLiveDocuments());
+        assertEquals(3, index.getDocumentFrequency("dog"));
+
+        SegmentedIndex merged = index.withMerged(0, index.numSegments());
+        assertEquals(1, merged.numSegments());
+        assertEquals(4, merged.size());
+        assertEquals(2, merged.getDocumentFrequency("dog"));
+        assertEquals(0, merged.getDocumentFrequency("hot"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMergeMatchesFreshIndex() {
+        Webpage[] pages = this.makeExamplePages();
+        Webpage updated = this.buildPage("b", "the slow brown fox slept");
+        SegmentedIndex index = new SegmentedIndex(this.buildSegment(pages[0], pages[1], pages[2]))
+                .withSegment(this.buildSegment(pages[3]))
+                .withSegment(this.buildSegment(pages[4]));
+        index = index.withDeletion(index.findDocument(pages[0].getUri()));
+        index = index.withDeletion(index.findDocument(updated.getUri())).withSegment(this.buildSegment(updated));
+
+        SegmentedIndex merged = index.withMerged(0, index.numSegments()).withRefreshedNorms();
+        this.assertSameScores(this.buildSegment(pages[2], pages[3], pages[4], updated), merged);
+        assertEquals("Title b", merged.getSegment(0).getSummary(merged.findDocument(updated.getUri())).getTitle());
+    }
+
+    @Test(timeout=SECOND)
+    public void testFindSegmentSkipsEmptySegments() {
+        Webpage[] pages = this.makeExamplePages();
+        SegmentedIndex gone = new SegmentedIndex(this.buildSegment(pages[1]));
+        gone = gone.withDeletion(0).withMerged(0, 1);
+        assertEquals(0, gone.size());
+
+        SegmentedIndex index = new SegmentedIndex(
+                this.buildSegment(pages[0]), gone.getSegment(0), this.buildSegment(pages[2], pages[3]));
+        assertEquals(0, index.findSegment(0));
+        assertEquals(2, index.findSegment(1));
+        assertEquals(2, index.findSegment(2));
+        assertEquals(3, index.getBase(2) + index.getSegment(2).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRebaseKeepsAddedSegments() {
+        Webpage[] pages = this.makeExamplePages();
+        SegmentedIndex earlier = new SegmentedIndex(this.buildSegment(pages[0]), this.buildSegment(pages[1]));
+        SegmentedIndex replacement = earlier.withMerged(0, 2);
+        SegmentedIndex later = earlier.withSegment(this.buildSegment(pages[2]));
+
+        SegmentedIndex rebased = later.rebase(earlier, replacement);
+        assertNotNull(rebased);
+        assertEquals(2, rebased.numSegments());
+        assertEquals(3, rebased.numLiveDocuments());
+        assertEquals(2, rebased.findDocument(pages[2].getUri()));
+
+        // Once a segment we started from has changed, the replacement is out of date.
+        SegmentedIndex deleted = later.withDeletion(later.findDocument(pages[0].getUri()));
+        assertNull(deleted.rebase(earlier, replacement));
+    }
+}
@@ -0,0 +1,48 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.SparseVector;
+
+public class TestSparseVector extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    @Test(timeout=SECOND)
+    public void testDotProductOfOverlappingVectors() {
+        SparseVector a = new SparseVector(new int[] {1, 3, 5, 9}, new double[] {1.0, 2.0, 3.0, 4.0});
+        SparseVector b = new SparseVector(new int[] {0, 3, 4, 9, 12}, new double[] {7.0, 0.5, 2.0, 2.0, 1.0});
+
+        assertEquals(9.0, a.dot(b), DELTA);
+        assertEquals(9.0, b.dot(a), DELTA);
+        assertEquals(Math.sqrt(30.0), a.norm(), DELTA);
+        assertEquals(9.0 / (Math.sqrt(30.0) * Math.sqrt(58.25)), a.cosineSimilarity(b), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testDisjointAndEmptyVectors() {
+        SparseVector a = new SparseVector(new int[] {1, 2}, new double[] {1.0, 1.0});
+        SparseVector b = new SparseVector(new int[] {3, 4}, new double[] {1.0, 1.0});
+        SparseVector empty = new SparseVector(new int[0], new double[0]);
+
+        assertEquals(0.0, a.dot(b), DELTA);
+        assertEquals(0.0, a.dot(empty), DELTA);
+        assertEquals(0.0, empty.norm(), DELTA);
+        assertEquals(0.0, a.cosineSimilarity(empty), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testScale() {
+        SparseVector a = new SparseVector(new int[] {0, 2}, new double[] {1.0, 3.0});
+        SparseVector scaled = a.scale(new double[] {2.0, 100.0, 0.5});
+
+        assertEquals(2, scaled.size());
+        assertEquals(2.0, scaled.getWeight(0), DELTA);
+        assertEquals(1.5, scaled.getWeight(1), DELTA);
+        assertEquals(2.5, scaled.norm(), DELTA);
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testUnsortedIndicesRejected() {
+        new SparseVector(new int[] {2, 1}, new double[] {1.0, 1.0});
+    }
+}
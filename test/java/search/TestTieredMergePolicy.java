@@ -0,0 +1,118 @@
+package search;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.Segment;
+import search.index.SegmentedIndex;
+import search.index.TieredMergePolicy;
+import search.models.Webpage;
+
+import java.net.URI;
+
+public class TestTieredMergePolicy extends BaseTest {
+    private int nextPage = 0;
+
+    private Segment buildSegment(int numPages) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            IList<String> words = new DoubleLinkedList<>();
+            words.add("word");
+            words.add("page" + this.nextPage);
+            pages.add(new Webpage(URI.create("http://example.com/" + this.nextPage), new DoubleLinkedList<>(),
+                    words, "Title", "Blurb"));
+            this.nextPage++;
+        }
+        return Segment.build(pages, 1.0);
+    }
+
+    private SegmentedIndex buildIndex(int... segmentSizes) {
+        Segment[] segments = new Segment[segmentSizes.length];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = this.buildSegment(segmentSizes[i]);
+        }
+        return new SegmentedIndex(segments);
+    }
+
+    private void assertMerge(int from, int to, int[] merge) {
+        assertNotNull(merge);
+        assertEquals(from, merge[0]);
+        assertEquals(to, merge[1]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testTiers() {
+        TieredMergePolicy policy = new TieredMergePolicy(10, 0.5);
+        assertEquals(0, policy.getTier(this.buildSegment(0)));
+        assertEquals(0, policy.getTier(this.buildSegment(9)));
+        assertEquals(1, policy.getTier(this.buildSegment(10)));
+        assertEquals(1, policy.getTier(this.buildSegment(99)));
+        assertEquals(2, policy.getTier(this.buildSegment(100)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNoMergeBelowMergeFactor() {
+        TieredMergePolicy policy = new TieredMergePolicy(3, 0.5);
+        assertNull(policy.findMerge(this.buildIndex()));
+        assertNull(policy.findMerge(this.buildIndex(20, 1, 1)));
+        assertNull(policy.findMerge(this.buildIndex(1, 1, 5, 1, 1)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMergesNeighboursInSameTier() {
+        TieredMergePolicy policy = new TieredMergePolicy(3, 0.5);
+        this.assertMerge(1, 4, policy.findMerge(this.buildIndex(20, 1, 2, 1, 1)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMergesLowestTierFirst() {
+        TieredMergePolicy policy = new TieredMergePolicy(3, 0.5);
+        this.assertMerge(3, 6, policy.findMerge(this.buildIndex(4, 5, 6, 1, 1, 1)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMergesCascade() {
+        TieredMergePolicy policy = new TieredMergePolicy(2, 0.5);
+        SegmentedIndex index = this.buildIndex(2, 1, 1);
+        int numMerges = 0;
+        int[] merge = policy.findMerge(index);
+        while (merge != null) {
+            index = index.withMerged(merge[0], merge[1]);
+            numMerges++;
+            merge = policy.findMerge(index);
+        }
+        assertEquals(2, numMerges);
+        assertEquals(1, index.numSegments());
+        assertEquals(4, index.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRewritesSegmentsWithManyDeletions() {
+        TieredMergePolicy policy = new TieredMergePolicy(10, 0.5);
+        SegmentedIndex index = this.buildIndex(4, 4);
+        index = index.withDeletion(4).withDeletion(5);
+        assertNull(policy.findMerge(index));
+
+        index = index.withDeletion(6);
+        this.assertMerge(1, 2, policy.findMerge(index));
+        index = index.withMerged(1, 2);
+        assertEquals(5, index.size());
+        assertNull(policy.findMerge(index));
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testRejectsSmallMergeFactor() {
+        new TieredMergePolicy(1, 0.5);
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testRejectsBadDeletedRatio() {
+        new TieredMergePolicy(10, 1.5);
+    }
+}
@@ -0,0 +1,91 @@
+package search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import misc.BaseTest;
+import misc.exceptions.EmptyContainerException;
+import org.junit.Test;
+import search.index.TopKHeap;
+
+public class TestTopKHeap extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    @Test(timeout=SECOND)
+    public void testKeepsHighestScores() {
+        TopKHeap heap = new TopKHeap(3);
+        double[] scores = {0.5, 0.1, 0.9, 0.3, 0.7, 0.2, 0.8};
+        for (int document = 0; document < scores.length; document++) {
+            heap.offer(document, scores[document]);
+        }
+
+        assertEquals(3, heap.size());
+        assertTrue(heap.isFull());
+        assertEquals(0.7, heap.peekMinScore(), DELTA);
+        assertEquals(4, heap.removeMin());
+        assertEquals(6, heap.removeMin());
+        assertEquals(2, heap.removeMin());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test(timeout=SECOND)
+    public void testOfferReportsWhetherKept() {
+        TopKHeap heap = new TopKHeap(2);
+
+        assertTrue(heap.offer(0, 1.0));
+        assertTrue(heap.offer(1, 2.0));
+        assertFalse(heap.offer(2, 0.5));
+        assertFalse(heap.offer(3, 1.0));
+        assertTrue(heap.offer(4, 3.0));
+        assertEquals(1, heap.peekMinDocument());
+    }
+
+    @Test(timeout=SECOND)
+    public void testOfferAllMergesHeaps() {
+        TopKHeap left = new TopKHeap(3);
+        TopKHeap right = new TopKHeap(3);
+        for (int document = 0; document < 10; document++) {
+            (document % 2 == 0 ? left : right).offer(document, document);
+        }
+
+        left.offerAll(right);
+        assertEquals(3, left.size());
+        assertEquals(7, left.removeMin());
+        assertEquals(8, left.removeMin());
+        assertEquals(9, left.removeMin());
+        assertEquals(3, right.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testZeroCapacityKeepsNothing() {
+        TopKHeap heap = new TopKHeap(0);
+
+        assertFalse(heap.offer(0, 1.0));
+        assertTrue(heap.isEmpty());
+        assertTrue(heap.isFull());
+    }
+
+    @Test(timeout=SECOND)
+    public void testManyDocuments() {
+        TopKHeap heap = new TopKHeap(100);
+        for (int document = 0; document < 10000; document++) {
+            heap.offer(document, (document * 7919) % 10000);
+        }
+
+        for (int i = 9900; i < 10000; i++) {
+            assertEquals(i, heap.peekMinScore(), DELTA);
+            heap.removeMin();
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test(timeout=SECOND, expected=EmptyContainerException.class)
+    public void testRemoveFromEmptyThrows() {
+        new TopKHeap(5).removeMin();
+    }
+
+    @Test(timeout=SECOND, expected=IllegalArgumentException.class)
+    public void testNegativeCapacityRejected() {
+        new TopKHeap(-1);
+    }
+}
@@ -0,0 +1,78 @@
+package search;
+
+import static org.junit.Assert.assertNull;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.models.Webpage;
+import search.models.WebpageCache;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestWebpageCache extends BaseTest {
+    private Webpage buildPage(String uri, String[] words, String[] linksTo) {
+        IList<String> wordList = new DoubleLinkedList<>();
+        for (String word : words) {
+            wordList.add(word);
+        }
+        IList<URI> links = new DoubleLinkedList<>();
+        for (String link : linksTo) {
+            links.add(URI.create(link));
+        }
+        return new Webpage(URI.create(uri), links, wordList, "title of " + uri, "blurb \u00e9\u4e2d");
+    }
+
+    private <T> void assertListEquals(IList<T> expected, IList<T> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRoundTrip() throws IOException {
+        Path folder = Files.createTempDirectory("cache");
+        Webpage[] pages = {
+            this.buildPage("http://example.com/a", new String[] {"cat", "dog", "cat"}, new String[] {"http://example.com/b"}),
+            this.buildPage("http://example.com/b", new String[] {}, new String[] {"http://example.com/a", "http://example.com/b"}),
+        };
+        WebpageCache.write(folder, new String[] {"a.html", "sub/b.html"}, new long[] {5L, 1L << 40}, pages);
+
+        WebpageCache cache = WebpageCache.open(folder);
+        assertEquals(2, cache.size());
+        for (int i = 0; i < pages.length; i++) {
+            Webpage page = cache.get(i == 0 ? "a.html" : "sub/b.html", i == 0 ? 5L : 1L << 40);
+            assertEquals(pages[i].getUri(), page.getUri());
+            assertEquals(pages[i].getSummary().getTitle(), page.getSummary().getTitle());
+            assertEquals(pages[i].getSummary().getBlurb(), page.getSummary().getBlurb());
+            this.assertListEquals(pages[i].getWords(), page.getWords());
+            this.assertListEquals(pages[i].getLinks(), page.getLinks());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingOrStalePages() throws IOException {
+        Path folder = Files.createTempDirectory("cache");
+        assertEquals(0, WebpageCache.open(folder).size());
+
+        Webpage page = this.buildPage("http://example.com/a", new String[] {"cat"}, new String[] {});
+        WebpageCache.write(folder, new String[] {"a.html"}, new long[] {5L}, new Webpage[] {page});
+
+        WebpageCache cache = WebpageCache.open(folder);
+        assertNull(cache.get("a.html", 6L));
+        assertNull(cache.get("b.html", 5L));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCorruptCacheIsIgnored() throws IOException {
+        Path folder = Files.createTempDirectory("cache");
+        Files.write(folder.resolve("pages-0.segment"), new byte[] {1, 2, 3});
+
+        assertEquals(0, WebpageCache.open(folder).size());
+    }
+}